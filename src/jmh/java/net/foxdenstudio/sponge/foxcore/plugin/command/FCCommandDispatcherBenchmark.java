@@ -0,0 +1,170 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command;
+
+import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.util.GuavaCollectors;
+import org.spongepowered.api.util.StartsWithPredicate;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for command dispatch and tab completion through nested {@link FCCommandDispatcher}s.
+ * <p>
+ * The tree mirrors the shape of the real /foxcore tree, but the leaf commands only parse their arguments
+ * so that the numbers reflect the dispatch path and not the state buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FCCommandDispatcherBenchmark {
+
+    private FCCommandDispatcher root;
+    private CommandSource source;
+
+    @Setup
+    public void setup() {
+        root = new FCCommandDispatcher("/bench", "Benchmark commands.");
+        root.register(new ParsingCommand(), "current", "cur", "c");
+        root.register(new ParsingCommand(), "state", "buffer", "set", "s");
+        root.register(new ParsingCommand(), "position", "pos", "p");
+        root.register(new ParsingCommand(), "flush", "clear", "wipe", "f");
+        root.register(new ParsingCommand(), "wand", "tool", "stick", "w");
+        root.register(new ParsingCommand(), "debug");
+        root.register(new ParsingCommand(), "hud", "scoreboard");
+        root.register(new ParsingCommand(), "about", "info");
+
+        FCCommandDispatcher misc = new FCCommandDispatcher("/bench misc", "Misc commands.");
+        misc.register(new ParsingCommand(), "pwd", "directory", "dir");
+        misc.register(new ParsingCommand(), "who", "plugin");
+        misc.register(new ParsingCommand(), "what", "command");
+        root.register(misc, "misc", "miscellaneous", "util");
+
+        FCCommandDispatcher deep = new FCCommandDispatcher("/bench misc deep", "Nested commands.");
+        for (int i = 0; i < 32; i++) {
+            deep.register(new ParsingCommand(), "command" + i, "cmd" + i);
+        }
+        misc.register(deep, "deep", "nested");
+
+        source = (CommandSource) Proxy.newProxyInstance(CommandSource.class.getClassLoader(), new Class<?>[]{CommandSource.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hasPermission":
+                            return true;
+                        case "getName":
+                        case "getIdentifier":
+                        case "toString":
+                            return "bench";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return method.getReturnType() == Optional.class ? Optional.empty() : null;
+                    }
+                });
+    }
+
+    @Benchmark
+    public CommandResult process() throws CommandException {
+        return root.process(source, "position add 120 64 -35 --color=red");
+    }
+
+    @Benchmark
+    public CommandResult processNested() throws CommandException {
+        return root.process(source, "misc deep cmd17 --name:\"Fox Den\" -ab > value");
+    }
+
+    @Benchmark
+    public List<String> suggestRoot() throws CommandException {
+        return root.getSuggestions(source, "", null);
+    }
+
+    @Benchmark
+    public List<String> suggestPrefix() throws CommandException {
+        return root.getSuggestions(source, "po", null);
+    }
+
+    @Benchmark
+    public List<String> suggestNested() throws CommandException {
+        return root.getSuggestions(source, "misc deep command1", null);
+    }
+
+    @Benchmark
+    public List<String> suggestLeaf() throws CommandException {
+        return root.getSuggestions(source, "misc deep cmd17 --name:\"Fox Den\" a", null);
+    }
+
+    private static class ParsingCommand extends FCCommandBase {
+
+        private static final List<String> OPTIONS = ImmutableList.of("add", "remove", "list", "set", "clear");
+
+        @Override
+        public CommandResult process(CommandSource source, String arguments) throws CommandException {
+            AdvCmdParser.builder().arguments(arguments).parse();
+            return CommandResult.empty();
+        }
+
+        @Override
+        public List<String> getSuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws CommandException {
+            AdvCmdParser.ParseResult parse = AdvCmdParser.builder()
+                    .arguments(arguments)
+                    .excludeCurrent(true)
+                    .autoCloseQuotes(true)
+                    .parse();
+            if (parse.current.type == AdvCmdParser.CurrentElement.ElementType.ARGUMENT) {
+                return OPTIONS.stream()
+                        .filter(new StartsWithPredicate(parse.current.token))
+                        .map(args -> parse.current.prefix + args)
+                        .collect(GuavaCollectors.toImmutableList());
+            }
+            return ImmutableList.of();
+        }
+    }
+}
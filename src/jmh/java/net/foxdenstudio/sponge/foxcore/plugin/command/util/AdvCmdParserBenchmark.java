@@ -0,0 +1,125 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.command.CommandException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link AdvCmdParser}, using the builder settings the commands actually use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdvCmdParserBenchmark {
+
+    private static final String SIMPLE = "add 120 64 -35";
+    private static final String QUOTED_FLAGS = "add ~ ~5 ~ --color:\"light purple\" --name='Fox Den \\'spawn\\'' -fq";
+    private static final String JUMP = "region --world=overworld -a > set \"hello world\" --force -xyz";
+    private static final String COMMENT = "positions add 10 20 30 --color=red --- mark the corner of the \"spawn\" area";
+    private static final String UNCLOSED = "create position --name:\"Half typed na";
+    private static final String LONG;
+
+    static {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 32; i++) {
+            builder.append("arg").append(i).append(" --key").append(i).append("=\"value ").append(i).append("\" ");
+        }
+        LONG = builder.toString().trim();
+    }
+
+    @Benchmark
+    public AdvCmdParser.ParseResult simple() throws CommandException {
+        return AdvCmdParser.builder()
+                .arguments(SIMPLE)
+                .parse();
+    }
+
+    @Benchmark
+    public AdvCmdParser.ParseResult quotedFlags() throws CommandException {
+        return AdvCmdParser.builder()
+                .arguments(QUOTED_FLAGS)
+                .limit(1)
+                .parseLastFlags(false)
+                .parse();
+    }
+
+    @Benchmark
+    public AdvCmdParser.ParseResult jump() throws CommandException {
+        return AdvCmdParser.builder()
+                .arguments(JUMP)
+                .limit(1)
+                .extractSubFlags(true)
+                .parse();
+    }
+
+    @Benchmark
+    public AdvCmdParser.ParseResult comment() throws CommandException {
+        return AdvCmdParser.builder()
+                .arguments(COMMENT)
+                .parse();
+    }
+
+    @Benchmark
+    public AdvCmdParser.ParseResult dispatcherSuggestion() throws CommandException {
+        return AdvCmdParser.builder()
+                .arguments(UNCLOSED)
+                .limit(1)
+                .leaveFinalAsIs(true)
+                .autoCloseQuotes(true)
+                .parseLastFlags(false)
+                .parse();
+    }
+
+    @Benchmark
+    public AdvCmdParser.ParseResult commandSuggestion() throws CommandException {
+        return AdvCmdParser.builder()
+                .arguments(UNCLOSED)
+                .excludeCurrent(true)
+                .autoCloseQuotes(true)
+                .parse();
+    }
+
+    @Benchmark
+    public AdvCmdParser.ParseResult longInput() throws CommandException {
+        return AdvCmdParser.builder()
+                .arguments(LONG)
+                .parse();
+    }
+}
@@ -8,4 +8,12 @@ import org.spongepowered.api.network.ChannelBuf;
 public interface IServerPacket extends IPacket {
 
     void write(ChannelBuf buf);
+
+    /**
+     * Whether this packet makes any earlier, still queued packet with the same id redundant.
+     * If so, those packets are dropped from the outbound queue instead of being sent.
+     */
+    default boolean supersedesPrevious() {
+        return false;
+    }
 }
@@ -0,0 +1,86 @@
+package net.foxdenstudio.sponge.foxcore.common.network.client.listener;
+
+import com.flowpowered.math.vector.Vector3f;
+import com.flowpowered.math.vector.Vector3i;
+import io.netty.buffer.ByteBuf;
+import net.foxdenstudio.sponge.foxcore.common.network.IServerPacketListener;
+import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPositionDeltaPacket;
+import net.foxdenstudio.sponge.foxcore.mod.FoxCoreClientMain;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the client's copy of the position list and applies {@link ServerPositionDeltaPacket} operations to it.
+ */
+public class ServerPositionDeltaPacketListener implements IServerPacketListener {
+
+    // Same order as Position.Color, which can't be loaded on the client.
+    private static final Vector3f[] COLORS = {
+            new Vector3f(1, 1, 1),
+            new Vector3f(1, 0, 0),
+            new Vector3f(1, 0.5, 0),
+            new Vector3f(1, 1, 0),
+            new Vector3f(0, 1, 0),
+            new Vector3f(0, 1, 1),
+            new Vector3f(0, 0, 1),
+            new Vector3f(1, 0, 1),
+            new Vector3f(0, 0, 0)
+    };
+
+    private final List<Vector3i> positionList = new ArrayList<>();
+    private final List<Vector3f> colorList = new ArrayList<>();
+
+    @Override
+    public synchronized void read(ByteBuf payload) {
+        byte operation = payload.readByte();
+        switch (operation) {
+            case ServerPositionDeltaPacket.SNAPSHOT:
+                positionList.clear();
+                colorList.clear();
+                readEntries(payload, Vector3i.ZERO);
+                break;
+            case ServerPositionDeltaPacket.ADD:
+                readEntries(payload, positionList.isEmpty() ? Vector3i.ZERO : positionList.get(positionList.size() - 1));
+                break;
+            case ServerPositionDeltaPacket.REMOVE:
+                int index = ByteBufUtils.readVarInt(payload, 5);
+                if (index >= 0 && index < positionList.size()) {
+                    positionList.remove(index);
+                    colorList.remove(index);
+                }
+                break;
+            case ServerPositionDeltaPacket.CLEAR:
+                positionList.clear();
+                colorList.clear();
+                break;
+            default:
+                FoxCoreClientMain.logger.warn("Unknown position operation: " + operation);
+                return;
+        }
+        FoxCoreClientMain.instance.getRenderHandler().updateList(positionList, colorList);
+    }
+
+    public synchronized void reset() {
+        positionList.clear();
+        colorList.clear();
+    }
+
+    private void readEntries(ByteBuf payload, Vector3i previous) {
+        int count = ByteBufUtils.readVarInt(payload, 5);
+        int x = previous.getX(), y = previous.getY(), z = previous.getZ();
+        for (int i = 0; i < count; i++) {
+            x += unzigzag(ByteBufUtils.readVarInt(payload, 5));
+            y += unzigzag(ByteBufUtils.readVarInt(payload, 5));
+            z += unzigzag(ByteBufUtils.readVarInt(payload, 5));
+            int color = payload.readUnsignedByte();
+            positionList.add(new Vector3i(x, y, z));
+            colorList.add(color < COLORS.length ? COLORS[color] : COLORS[0]);
+        }
+    }
+
+    private static int unzigzag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
@@ -0,0 +1,126 @@
+package net.foxdenstudio.sponge.foxcore.common.network.server.packet;
+
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.common.network.IServerPacket;
+import net.foxdenstudio.sponge.foxcore.plugin.util.Position;
+import org.spongepowered.api.network.ChannelBuf;
+
+import java.util.List;
+
+/**
+ * Incremental version of {@link ServerPositionPacket}.
+ * <p>
+ * Each packet is one operation on the client's copy of the position list: replace everything,
+ * append entries, remove the entry at an index, or clear it.
+ * Coordinates are written as zigzag varints relative to the previous entry,
+ * and colors as the ordinal of {@link Position.Color}.
+ * Only sent to clients that said they can read it during the handshake.
+ */
+public class ServerPositionDeltaPacket implements IServerPacket {
+
+    public static final String ID = "serverpositionpacketv2";
+
+    public static final byte SNAPSHOT = 0;
+    public static final byte ADD = 1;
+    public static final byte REMOVE = 2;
+    public static final byte CLEAR = 3;
+
+    private final byte operation;
+    private final Vector3i base;
+    private final List<Position> positions;
+    private final int index;
+
+    private ServerPositionDeltaPacket(byte operation, Vector3i base, List<Position> positions, int index) {
+        this.operation = operation;
+        this.base = base;
+        this.positions = positions;
+        this.index = index;
+    }
+
+    public static ServerPositionDeltaPacket snapshot(List<Position> positions) {
+        return new ServerPositionDeltaPacket(SNAPSHOT, Vector3i.ZERO, positions, 0);
+    }
+
+    /**
+     * @param previous the last position the client already has, which the first new entry is encoded relative to.
+     */
+    public static ServerPositionDeltaPacket add(Vector3i previous, List<Position> positions) {
+        return new ServerPositionDeltaPacket(ADD, previous == null ? Vector3i.ZERO : previous, positions, 0);
+    }
+
+    public static ServerPositionDeltaPacket remove(int index) {
+        return new ServerPositionDeltaPacket(REMOVE, Vector3i.ZERO, ImmutableList.of(), index);
+    }
+
+    public static ServerPositionDeltaPacket clear() {
+        return new ServerPositionDeltaPacket(CLEAR, Vector3i.ZERO, ImmutableList.of(), 0);
+    }
+
+    /**
+     * Finds the smallest packet that turns the client's list into the current one.
+     * Appends, single removals and clears get their own operation, anything else is sent as a snapshot.
+     *
+     * @param previous the list the client currently has
+     * @param current  the list the client should have
+     * @return the packet to send, or null if the lists are already the same.
+     */
+    public static ServerPositionDeltaPacket diff(List<Position> previous, List<Position> current) {
+        final int oldSize = previous.size(), newSize = current.size();
+        if (newSize == 0) return oldSize == 0 ? null : clear();
+
+        int common = 0;
+        final int min = Math.min(oldSize, newSize);
+        while (common < min && previous.get(common).equals(current.get(common))) common++;
+
+        if (common == oldSize) {
+            if (newSize == oldSize) return null;
+            return add(oldSize > 0 ? previous.get(oldSize - 1) : null, current.subList(oldSize, newSize));
+        } else if (newSize == oldSize - 1) {
+            for (int i = common; i < newSize; i++) {
+                if (!previous.get(i + 1).equals(current.get(i))) return snapshot(current);
+            }
+            return remove(common);
+        }
+        return snapshot(current);
+    }
+
+    @Override
+    public void write(ChannelBuf buf) {
+        buf.writeByte(operation);
+        switch (operation) {
+            case SNAPSHOT:
+            case ADD:
+                buf.writeVarInt(positions.size());
+                int x = base.getX(), y = base.getY(), z = base.getZ();
+                for (Position pos : positions) {
+                    buf.writeVarInt(zigzag(pos.getX() - x));
+                    buf.writeVarInt(zigzag(pos.getY() - y));
+                    buf.writeVarInt(zigzag(pos.getZ() - z));
+                    buf.writeByte((byte) pos.getColor().ordinal());
+                    x = pos.getX();
+                    y = pos.getY();
+                    z = pos.getZ();
+                }
+                break;
+            case REMOVE:
+                buf.writeVarInt(index);
+                break;
+        }
+    }
+
+    @Override
+    public boolean supersedesPrevious() {
+        return operation == SNAPSHOT || operation == CLEAR;
+    }
+
+    // Maps small negative numbers to small positive ones so they stay short as varints.
+    private static int zigzag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+}
@@ -33,6 +33,11 @@ public class ServerPositionPacket implements IServerPacket {
         });
     }
 
+    @Override
+    public boolean supersedesPrevious() {
+        return true;
+    }
+
     @Override
     public String id() {
         return ID;
@@ -29,6 +29,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.function.BiFunction;
 
+/**
+ * @deprecated use {@link LoadingCacheMap} instead.
+ */
+@Deprecated
 public class CacheMap<K, V> extends HashMap<K, V> {
     final private BiFunction<Object, Map<K, V>, V> callback;
 
@@ -0,0 +1,137 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.common.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ForwardingConcurrentMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Thread safe map that loads missing values on {@link #get(Object)}.
+ * <p>
+ * A hit is a single lookup, and concurrent misses on the same key only load it once.
+ * If the loader returns null, null is returned and nothing is cached.
+ * Every other map operation works on the cached entries only.
+ * <p>
+ * Weak keys are compared by identity. Don't use them for players, who get a new entity on respawn and
+ * dimension change; key those by UUID instead.
+ */
+public class LoadingCacheMap<K, V> extends ForwardingConcurrentMap<K, V> {
+
+    private final Cache<K, V> cache;
+    private final ConcurrentMap<K, V> map;
+    private final Function<? super K, ? extends V> loader;
+
+    private LoadingCacheMap(Cache<K, V> cache, Function<? super K, ? extends V> loader) {
+        this.cache = cache;
+        this.map = cache.asMap();
+        this.loader = loader;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    protected ConcurrentMap<K, V> delegate() {
+        return map;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) return null;
+        final K k = (K) key;
+        try {
+            return cache.get(k, () -> loader.apply(k));
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            return null;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new RuntimeException("Error loading cache entry for " + key, e.getCause());
+        }
+    }
+
+    /**
+     * Gets a value only if it's already cached.
+     */
+    public V getIfPresent(Object key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Hit, miss and eviction counts since this map was created.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public static final class Builder {
+
+        private final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().recordStats();
+
+        private Builder() {
+        }
+
+        /**
+         * Bounds the map, evicting the least recently used entries first.
+         */
+        public Builder maximumSize(long size) {
+            cacheBuilder.maximumSize(size);
+            return this;
+        }
+
+        public Builder weakKeys() {
+            cacheBuilder.weakKeys();
+            return this;
+        }
+
+        public Builder weakValues() {
+            cacheBuilder.weakValues();
+            return this;
+        }
+
+        public Builder softValues() {
+            cacheBuilder.softValues();
+            return this;
+        }
+
+        public Builder concurrencyLevel(int level) {
+            cacheBuilder.concurrencyLevel(level);
+            return this;
+        }
+
+        public <K, V> LoadingCacheMap<K, V> build(Function<? super K, ? extends V> loader) {
+            return new LoadingCacheMap<>(cacheBuilder.build(), loader);
+        }
+    }
+}
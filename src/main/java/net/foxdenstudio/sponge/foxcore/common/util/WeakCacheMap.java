@@ -29,6 +29,10 @@ import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.function.BiFunction;
 
+/**
+ * @deprecated use {@link LoadingCacheMap} with weak keys instead.
+ */
+@Deprecated
 public class WeakCacheMap<K, V> extends WeakHashMap<K, V> {
     final private BiFunction<Object, Map<K, V>, V> callback;
 
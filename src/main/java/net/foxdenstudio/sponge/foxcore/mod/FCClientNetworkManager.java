@@ -31,6 +31,7 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.Attribute;
 import net.foxdenstudio.sponge.foxcore.common.network.IClientPacket;
 import net.foxdenstudio.sponge.foxcore.common.network.IServerPacketListener;
 import net.minecraft.network.PacketBuffer;
@@ -41,11 +42,33 @@ import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.internal.FMLProxyPacket;
 import net.minecraftforge.fml.relauncher.Side;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FCClientNetworkManager {
 
+    // Channel id of a payload that contains several packets, each prefixed with its channel, packet id and length.
+    private static final int BATCH_CHANNEL_ID = -2;
+    // Channel id the server uses to acknowledge our handshake reply.
+    private static final int HANDSHAKE_ACK_CHANNEL_ID = -3;
+    // SpongeForge can lose packets sent right after joining, so the reply is resent until the server acknowledges it.
+    private static final long HANDSHAKE_INITIAL_DELAY = 250;
+    private static final long HANDSHAKE_MAX_DELAY = 8000;
+    private static final int HANDSHAKE_MAX_ATTEMPTS = 6;
+    // Channel id and packet id.
+    private static final int HEADER_SIZE = 8;
+    private static final int DEFAULT_PAYLOAD_SIZE = 56;
+    // Capabilities sent to the server in the handshake.
+    private static final int CAPABILITY_BATCH = 1;
+    // Capability flag the server sends in its handshake if it acknowledges our reply.
+    private static final int SERVER_CAPABILITY_HANDSHAKE_ACK = 1;
+    // Server ids at or above this are treated as unknown, so the dispatch table stays small.
+    private static final int MAX_REMOTE_ID = 1024;
+
     private static FCClientNetworkManager instance;
     public final Map<Integer, String> serverChannelMapping = new HashMap<>();
     public final Map<Integer, String> serverPacketMapping = new HashMap<>();
@@ -56,6 +79,26 @@ public class FCClientNetworkManager {
     private int nextAvailableChannelIndex = 1;
     private int nextAvailablePacketIndex = 0;
     private boolean locked = false;
+    // Listener for each server channel id and packet id, built when the server handshake is received.
+    private IServerPacketListener[][] dispatchTable = new IServerPacketListener[0][];
+    private final AtomicLong unknownPackets = new AtomicLong();
+    private final AtomicLong payloadsSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bufferBytesAllocated = new AtomicLong();
+    private final AtomicLong bufferResizes = new AtomicLong();
+    // Size of the last payload written for each packet id, used to size the next buffer.
+    private int[] payloadSizeHints = new int[0];
+    // The handshake reply never changes once the manager is locked, so it's only built once and resent as is.
+    private byte[] handshakePayload;
+
+    private HandshakeState handshakeState = HandshakeState.IDLE;
+    private long handshakeStart;
+    private long nextHandshakeAttempt;
+    private long handshakeDelay;
+    private int handshakeAttempts;
+    // Older servers never acknowledge, and greet the player again for every resent reply.
+    private boolean serverAcknowledges;
+    private long handshakeLatency = -1;
 
     private FCClientNetworkManager() {
     }
@@ -88,26 +131,91 @@ public class FCClientNetworkManager {
 
     public void negotiateHandshake() {
         if (fmlEmbeddedChannel != null && locked) {
-            ByteBuf byteBuf = Unpooled.buffer();
-            byteBuf.writeInt(0);
-            byteBuf.writeInt(this.clientChannels.size());
-            for (FCClientNetworkManager.ClientChannel channel : this.clientChannels.values()) {
-                byteBuf.writeInt(channel.id);
-                ByteBufUtils.writeUTF8String(byteBuf, channel.name);
-            }
-            byteBuf.writeInt(this.clientPacketIDMapping.size());
-            for (Map.Entry<String, Integer> entry : this.clientPacketIDMapping.entrySet()) {
-                byteBuf.writeInt(entry.getValue());
-                ByteBufUtils.writeUTF8String(byteBuf, entry.getKey());
-            }
-            fmlEmbeddedChannel.attr(FMLOutboundHandler.FML_MESSAGETARGET).set(FMLOutboundHandler.OutboundTarget.TOSERVER);
-            fmlEmbeddedChannel.writeAndFlush(new FMLProxyPacket(new PacketBuffer(byteBuf), "fox")).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+            if (handshakePayload == null) handshakePayload = buildHandshakePayload();
+            send(Unpooled.wrappedBuffer(handshakePayload), handshakePayload.length);
             FoxCoreClientMain.logger.info("Sent handshake packet");
         } else {
             FoxCoreClientMain.logger.error("Tried to negotiate handshake before manager configurations has been locked!");
         }
     }
 
+    private byte[] buildHandshakePayload() {
+        ByteBuf byteBuf = Unpooled.buffer();
+        byteBuf.writeInt(0);
+        byteBuf.writeInt(this.clientChannels.size());
+        for (FCClientNetworkManager.ClientChannel channel : this.clientChannels.values()) {
+            byteBuf.writeInt(channel.id);
+            ByteBufUtils.writeUTF8String(byteBuf, channel.name);
+        }
+        byteBuf.writeInt(this.clientPacketIDMapping.size());
+        for (Map.Entry<String, Integer> entry : this.clientPacketIDMapping.entrySet()) {
+            byteBuf.writeInt(entry.getValue());
+            ByteBufUtils.writeUTF8String(byteBuf, entry.getKey());
+        }
+        Set<String> listenedPackets = new HashSet<>();
+        for (FCClientNetworkManager.ClientChannel channel : this.clientChannels.values()) {
+            listenedPackets.addAll(channel.serverPacketListeners.keySet());
+        }
+        byteBuf.writeInt(listenedPackets.size());
+        for (String packetName : listenedPackets) {
+            ByteBufUtils.writeUTF8String(byteBuf, packetName);
+        }
+        byteBuf.writeInt(CAPABILITY_BATCH);
+        byte[] bytes = new byte[byteBuf.readableBytes()];
+        byteBuf.readBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Sends a finished payload to the server.
+     *
+     * @param initialCapacity the capacity the buffer was allocated with, to track how often buffers have to grow.
+     */
+    private void send(ByteBuf byteBuf, int initialCapacity) {
+        // Nothing else sends on this channel, so the target only has to be set when something changed it.
+        Attribute<FMLOutboundHandler.OutboundTarget> target = fmlEmbeddedChannel.attr(FMLOutboundHandler.FML_MESSAGETARGET);
+        if (target.get() != FMLOutboundHandler.OutboundTarget.TOSERVER) {
+            target.set(FMLOutboundHandler.OutboundTarget.TOSERVER);
+        }
+        payloadsSent.incrementAndGet();
+        bytesSent.addAndGet(byteBuf.readableBytes());
+        bufferBytesAllocated.addAndGet(byteBuf.capacity());
+        if (byteBuf.capacity() > initialCapacity) bufferResizes.incrementAndGet();
+        fmlEmbeddedChannel.writeAndFlush(new FMLProxyPacket(new PacketBuffer(byteBuf), "fox")).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+    }
+
+    private synchronized int getPayloadSizeHint(int packetID) {
+        return packetID < payloadSizeHints.length && payloadSizeHints[packetID] > 0 ? payloadSizeHints[packetID] : DEFAULT_PAYLOAD_SIZE;
+    }
+
+    private synchronized void setPayloadSizeHint(int packetID, int size) {
+        if (packetID < 0) return;
+        if (packetID >= payloadSizeHints.length) payloadSizeHints = Arrays.copyOf(payloadSizeHints, packetID + 1);
+        payloadSizeHints[packetID] = size;
+    }
+
+    public long getPayloadsSent() {
+        return payloadsSent.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return the total capacity of all outbound buffers, which is what sending actually allocated.
+     */
+    public long getBufferBytesAllocated() {
+        return bufferBytesAllocated.get();
+    }
+
+    /**
+     * @return how many outbound buffers had to grow because a packet was bigger than its size hint.
+     */
+    public long getBufferResizes() {
+        return bufferResizes.get();
+    }
+
     public void registerPacket(String packetID) {
         if (!locked && !this.clientPacketIDMapping.containsKey(packetID)) {
             this.clientPacketIDMapping.put(packetID, this.nextAvailablePacketIndex++);
@@ -127,6 +235,103 @@ public class FCClientNetworkManager {
         this.locked = true;
     }
 
+    /**
+     * Called every client tick. Sends the handshake reply when the next attempt is due.
+     */
+    public synchronized void tick() {
+        if (handshakeState != HandshakeState.PENDING) return;
+        long now = System.currentTimeMillis();
+        if (now < nextHandshakeAttempt) return;
+        if (handshakeAttempts >= HANDSHAKE_MAX_ATTEMPTS) {
+            handshakeState = HandshakeState.UNACKNOWLEDGED;
+            FoxCoreClientMain.logger.info("Server never acknowledged the handshake after " + handshakeAttempts + " attempts.");
+            return;
+        }
+        negotiateHandshake();
+        handshakeAttempts++;
+        if (!serverAcknowledges) {
+            handshakeState = HandshakeState.UNACKNOWLEDGED;
+            FoxCoreClientMain.logger.info("Server doesn't acknowledge handshakes, so the reply was only sent once.");
+            return;
+        }
+        nextHandshakeAttempt = now + handshakeDelay;
+        handshakeDelay = Math.min(handshakeDelay * 2, HANDSHAKE_MAX_DELAY);
+    }
+
+    private synchronized void startHandshake(boolean serverAcknowledges) {
+        long now = System.currentTimeMillis();
+        handshakeState = HandshakeState.PENDING;
+        this.serverAcknowledges = serverAcknowledges;
+        handshakeStart = now;
+        handshakeAttempts = 0;
+        handshakeDelay = HANDSHAKE_INITIAL_DELAY;
+        nextHandshakeAttempt = now + HANDSHAKE_INITIAL_DELAY;
+        handshakeLatency = -1;
+    }
+
+    private synchronized void acknowledgeHandshake() {
+        if (handshakeState == HandshakeState.PENDING || handshakeState == HandshakeState.UNACKNOWLEDGED) {
+            handshakeState = HandshakeState.ACKNOWLEDGED;
+            handshakeLatency = System.currentTimeMillis() - handshakeStart;
+            FoxCoreClientMain.logger.info("Server acknowledged handshake after " + handshakeAttempts + " attempt(s) and " + handshakeLatency + "ms.");
+        }
+    }
+
+    public synchronized void resetHandshake() {
+        handshakeState = HandshakeState.IDLE;
+    }
+
+    public synchronized HandshakeState getHandshakeState() {
+        return handshakeState;
+    }
+
+    public synchronized int getHandshakeAttempts() {
+        return handshakeAttempts;
+    }
+
+    /**
+     * @return milliseconds from receiving the server's handshake to the server acknowledging our reply, or -1 if it hasn't yet.
+     */
+    public synchronized long getHandshakeLatency() {
+        return handshakeLatency;
+    }
+
+    /**
+     * @return the number of inbound packets that didn't map to a known channel and listener.
+     */
+    public long getUnknownPackets() {
+        return unknownPackets.get();
+    }
+
+    private void buildDispatchTable() {
+        int channelSize = 0, packetSize = 0;
+        for (int id : serverChannelMapping.keySet()) {
+            if (id >= 0 && id < MAX_REMOTE_ID) channelSize = Math.max(channelSize, id + 1);
+        }
+        for (int id : serverPacketMapping.keySet()) {
+            if (id >= 0 && id < MAX_REMOTE_ID) packetSize = Math.max(packetSize, id + 1);
+        }
+        IServerPacketListener[][] table = new IServerPacketListener[channelSize][];
+        for (Map.Entry<Integer, String> channelEntry : serverChannelMapping.entrySet()) {
+            int channelID = channelEntry.getKey();
+            ClientChannel channel = clientChannels.get(channelEntry.getValue());
+            if (channel == null || channelID < 0 || channelID >= channelSize) continue;
+            IServerPacketListener[] listeners = new IServerPacketListener[packetSize];
+            for (Map.Entry<Integer, String> packetEntry : serverPacketMapping.entrySet()) {
+                int packetID = packetEntry.getKey();
+                if (packetID >= 0 && packetID < packetSize) {
+                    listeners[packetID] = channel.serverPacketListeners.get(packetEntry.getValue());
+                }
+            }
+            table[channelID] = listeners;
+        }
+        this.dispatchTable = table;
+    }
+
+    public enum HandshakeState {
+        IDLE, PENDING, ACKNOWLEDGED, UNACKNOWLEDGED
+    }
+
     public class ClientChannel {
 
         public final FCClientNetworkManager networkManager = FCClientNetworkManager.this;
@@ -141,12 +346,14 @@ public class FCClientNetworkManager {
         }
 
         public void sendPacket(IClientPacket clientPacket) {
-            ByteBuf byteBuf = Unpooled.buffer();
+            int packetID = clientPacketIDMapping.get(clientPacket.id());
+            int capacity = HEADER_SIZE + getPayloadSizeHint(packetID);
+            ByteBuf byteBuf = Unpooled.buffer(capacity);
             byteBuf.writeInt(id);
-            byteBuf.writeInt(clientPacketIDMapping.get(clientPacket.id()));
+            byteBuf.writeInt(packetID);
             clientPacket.write(byteBuf);
-            fmlEmbeddedChannel.attr(FMLOutboundHandler.FML_MESSAGETARGET).set(FMLOutboundHandler.OutboundTarget.TOSERVER);
-            fmlEmbeddedChannel.writeAndFlush(new FMLProxyPacket(new PacketBuffer(byteBuf), "fox")).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+            setPayloadSizeHint(packetID, byteBuf.readableBytes() - HEADER_SIZE);
+            send(byteBuf, capacity);
         }
 
         public void registerListener(String packetName, IServerPacketListener listener) {
@@ -156,11 +363,9 @@ public class FCClientNetworkManager {
         }
 
         public void sendDebug() {
-            ByteBuf byteBuf = Unpooled.buffer();
+            ByteBuf byteBuf = Unpooled.buffer(4);
             byteBuf.writeInt(-1);
-
-            fmlEmbeddedChannel.attr(FMLOutboundHandler.FML_MESSAGETARGET).set(FMLOutboundHandler.OutboundTarget.TOSERVER);
-            fmlEmbeddedChannel.writeAndFlush(new FMLProxyPacket(new PacketBuffer(byteBuf), "fox")).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+            send(byteBuf, 4);
         }
 
         public boolean hasServerChannel() {
@@ -185,6 +390,8 @@ public class FCClientNetworkManager {
                     FoxCoreClientMain.instance.getFoxcoreChannel().sendDebug();
                 } else if (channelID == 0) {
                     FoxCoreClientMain.logger.info("FoxCore client network manager received a handshake. This means the server has FoxCore installed. Negotiating.");
+                    serverChannelMapping.clear();
+                    serverPacketMapping.clear();
                     int channelCount = data.readInt();
                     for (int i = 0; i < channelCount; i++) {
                         int serverChannelID = data.readInt();
@@ -197,30 +404,42 @@ public class FCClientNetworkManager {
                         String serverPacketName = ByteBufUtils.readUTF8String(data);
                         serverPacketMapping.put(serverPacketID, serverPacketName);
                     }
+                    // Older servers don't send capabilities.
+                    int serverCapabilities = data.readableBytes() >= 4 ? data.readInt() : 0;
+                    buildDispatchTable();
                     hasServer = true;
-                    // SpongeForge is dumb, and appears to lose packets that are sent to the server within the first
-                    // few milliseconds of joining the server.
-                    // So we just wait a second before sending the handshake packet.
-                    // Since we are on a Netty worker thread, we're not stopping the rest of the network code from catching up.
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    negotiateHandshake();
-                } else if (hasServer) {
-                    ClientChannel channel = clientChannels.get(serverChannelMapping.get(channelID));
-                    if (channel != null) {
-                        int packetID = data.readInt();
-                        IServerPacketListener listener = channel.serverPacketListeners.get(serverPacketMapping.get(packetID));
-                        if (listener != null) {
-                            listener.read(data);
+                    // The reply is sent from the client tick, see tick().
+                    startHandshake((serverCapabilities & SERVER_CAPABILITY_HANDSHAKE_ACK) != 0);
+                } else if (channelID == HANDSHAKE_ACK_CHANNEL_ID) {
+                    acknowledgeHandshake();
+                } else if (channelID == BATCH_CHANNEL_ID) {
+                    if (hasServer) {
+                        int count = data.readInt();
+                        for (int i = 0; i < count; i++) {
+                            int packetChannelID = data.readInt();
+                            int packetID = data.readInt();
+                            int length = data.readInt();
+                            dispatch(packetChannelID, packetID, data.readSlice(length));
                         }
                     }
+                } else if (hasServer) {
+                    int packetID = data.readInt();
+                    dispatch(channelID, packetID, data);
                 }
             } else {
                 super.channelRead(ctx, msg);
             }
         }
+
+        private void dispatch(int channelID, int packetID, ByteBuf payload) {
+            IServerPacketListener[][] table = dispatchTable;
+            IServerPacketListener[] listeners = channelID >= 0 && channelID < table.length ? table[channelID] : null;
+            IServerPacketListener listener = listeners != null && packetID >= 0 && packetID < listeners.length ? listeners[packetID] : null;
+            if (listener != null) {
+                listener.read(payload);
+            } else {
+                unknownPackets.incrementAndGet();
+            }
+        }
     }
 }
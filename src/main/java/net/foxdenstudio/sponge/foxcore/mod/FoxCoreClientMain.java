@@ -25,8 +25,10 @@
 
 package net.foxdenstudio.sponge.foxcore.mod;
 
+import net.foxdenstudio.sponge.foxcore.common.network.client.listener.ServerPositionDeltaPacketListener;
 import net.foxdenstudio.sponge.foxcore.common.network.client.listener.ServerPositionPacketListener;
 import net.foxdenstudio.sponge.foxcore.common.network.client.listener.ServerPrintStringPacketListener;
+import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPositionDeltaPacket;
 import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPositionPacket;
 import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPrintStringPacket;
 import net.foxdenstudio.sponge.foxcore.mod.render.RenderHandler;
@@ -39,6 +41,7 @@ import net.minecraftforge.fml.common.event.FMLLoadCompleteEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.common.network.FMLNetworkEvent;
 import org.apache.logging.log4j.Logger;
 
@@ -54,6 +57,7 @@ public class FoxCoreClientMain {
 
     private RenderHandler renderHandler;
     private FCClientNetworkManager.ClientChannel foxcoreChannel;
+    private ServerPositionDeltaPacketListener positionDeltaListener;
 
     @EventHandler
     public void preInit(FMLPreInitializationEvent event) {
@@ -64,6 +68,7 @@ public class FoxCoreClientMain {
         foxcoreChannel = manager.getOrCreateClientChannel("foxcore");
         logger.info("Registering server packet listeners");
         foxcoreChannel.registerListener(ServerPositionPacket.ID, new ServerPositionPacketListener());
+        foxcoreChannel.registerListener(ServerPositionDeltaPacket.ID, positionDeltaListener = new ServerPositionDeltaPacketListener());
         foxcoreChannel.registerListener(ServerPrintStringPacket.ID, new ServerPrintStringPacketListener());
     }
 
@@ -90,11 +95,23 @@ public class FoxCoreClientMain {
 
     @SubscribeEvent
     public void onDisconnect(FMLNetworkEvent.ClientDisconnectionFromServerEvent event) {
-        FCClientNetworkManager.instance().hasServer = false;
+        FCClientNetworkManager network = FCClientNetworkManager.instance();
+        network.hasServer = false;
+        network.resetHandshake();
         FoxCoreClientMain.logger.info("Disco Fox!");
+        // Counted since the game started, to check how well payload size hints work.
+        FoxCoreClientMain.logger.info("Sent " + network.getPayloadsSent() + " payload(s) totaling " + network.getBytesSent() + " bytes, in "
+                + network.getBufferBytesAllocated() + " bytes of buffers with " + network.getBufferResizes() + " resize(s). Received "
+                + network.getUnknownPackets() + " unknown packet(s).");
+        this.positionDeltaListener.reset();
         this.renderHandler.updateList(null, null);
     }
 
+    @SubscribeEvent
+    public void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) FCClientNetworkManager.instance().tick();
+    }
+
     public RenderHandler getRenderHandler() {
         return renderHandler;
     }
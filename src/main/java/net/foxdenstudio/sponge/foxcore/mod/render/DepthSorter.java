@@ -0,0 +1,197 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.foxdenstudio.sponge.foxcore.mod.render;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps a list in back to front order for a moving camera without doing a full sort every frame.
+ * <p>
+ * Nothing is done while the list is unchanged and the camera has moved less than the threshold
+ * since the last sort. Otherwise distances are recomputed and elements are spread into buckets by distance,
+ * farthest bucket first, keeping their previous order within each bucket. An insertion sort then only has
+ * to fix the order inside each bucket, which for a camera that moves a little each frame is nearly sorted already.
+ * <p>
+ * Not thread safe. Use one sorter per list.
+ */
+public class DepthSorter<T> {
+
+    public static final double DEFAULT_THRESHOLD = 0.5;
+    private static final int MAX_BUCKETS = 4096;
+    // Lists this small go straight to the insertion sort.
+    private static final int MIN_BUCKETED_SIZE = 64;
+
+    private final Distance<? super T> distance;
+    private final double thresholdSquared;
+
+    private double lastX, lastY, lastZ;
+    private int lastModCount;
+    private boolean sorted = false;
+
+    private Object[] elements = new Object[0];
+    private double[] distances = new double[0];
+    private Object[] scratchElements = new Object[0];
+    private double[] scratchDistances = new double[0];
+    private int[] bucketOf = new int[0];
+    private int[] bucketStart = new int[0];
+
+    private long skips, sorts;
+
+    public DepthSorter(Distance<? super T> distance) {
+        this(distance, DEFAULT_THRESHOLD);
+    }
+
+    public DepthSorter(Distance<? super T> distance, double threshold) {
+        this.distance = distance;
+        this.thresholdSquared = threshold * threshold;
+    }
+
+    /**
+     * Sorts the list farthest first. Elements are only ever moved with {@link List#set(int, Object)},
+     * so the list's structure and modification count don't change.
+     *
+     * @param modCount the list's modification count, used to tell whether elements were added or removed since the last sort.
+     * @return whether the list was sorted, rather than skipped because nothing moved far enough.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean sort(List<T> list, int modCount, double x, double y, double z) {
+        if (sorted && modCount == lastModCount) {
+            final double dx = x - lastX, dy = y - lastY, dz = z - lastZ;
+            if (dx * dx + dy * dy + dz * dz < thresholdSquared) {
+                skips++;
+                return false;
+            }
+        }
+
+        final int size = list.size();
+        ensureCapacity(size);
+        double max = 0;
+        for (int i = 0; i < size; i++) {
+            T element = list.get(i);
+            elements[i] = element;
+            double d = distance.apply(element, x, y, z);
+            distances[i] = d;
+            if (d > max) max = d;
+        }
+
+        if (size >= MIN_BUCKETED_SIZE) bucket(size, max);
+        insertionSort(size);
+        sorts++;
+
+        for (int i = 0; i < size; i++) {
+            list.set(i, (T) elements[i]);
+        }
+        Arrays.fill(elements, 0, size, null);
+
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+        lastModCount = modCount;
+        sorted = true;
+        return true;
+    }
+
+    /**
+     * Forces the next call to {@link #sort} to sort even if the camera hasn't moved.
+     */
+    public void invalidate() {
+        sorted = false;
+    }
+
+    private void ensureCapacity(int size) {
+        if (elements.length >= size) return;
+        int capacity = Math.max(size, elements.length * 2);
+        elements = new Object[capacity];
+        distances = new double[capacity];
+        scratchElements = new Object[capacity];
+        scratchDistances = new double[capacity];
+        bucketOf = new int[capacity];
+    }
+
+    /**
+     * Stable counting sort into buckets of equal width in distance (not squared distance), farthest first.
+     */
+    private void bucket(int size, double max) {
+        final int buckets = Math.min(MAX_BUCKETS, size);
+        final double scale = max > 0 ? (buckets - 1) / Math.sqrt(max) : 0;
+        if (bucketStart.length < buckets + 1) bucketStart = new int[buckets + 1];
+        Arrays.fill(bucketStart, 0, buckets + 1, 0);
+        for (int i = 0; i < size; i++) {
+            int bucket = buckets - 1 - (int) (Math.sqrt(distances[i]) * scale);
+            if (bucket < 0) bucket = 0;
+            bucketOf[i] = bucket;
+            bucketStart[bucket + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        for (int i = 0; i < size; i++) {
+            int index = bucketStart[bucketOf[i]]++;
+            scratchElements[index] = elements[i];
+            scratchDistances[index] = distances[i];
+        }
+
+        Object[] swapElements = elements;
+        elements = scratchElements;
+        scratchElements = swapElements;
+        double[] swapDistances = distances;
+        distances = scratchDistances;
+        scratchDistances = swapDistances;
+        Arrays.fill(scratchElements, 0, size, null);
+    }
+
+    private void insertionSort(int size) {
+        for (int i = 1; i < size; i++) {
+            final double d = distances[i];
+            if (distances[i - 1] >= d) continue;
+            final Object element = elements[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] < d) {
+                distances[j + 1] = distances[j];
+                elements[j + 1] = elements[j];
+                j--;
+            }
+            distances[j + 1] = d;
+            elements[j + 1] = element;
+        }
+    }
+
+    public long getSkips() {
+        return skips;
+    }
+
+    public long getSorts() {
+        return sorts;
+    }
+
+    @FunctionalInterface
+    public interface Distance<T> {
+        /**
+         * @return the squared distance from the element to the camera. May also store it on the element.
+         */
+        double apply(T element, double x, double y, double z);
+    }
+}
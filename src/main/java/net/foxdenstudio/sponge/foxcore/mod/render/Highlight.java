@@ -33,7 +33,7 @@ import static org.lwjgl.opengl.GL11.*;
 
 public class Highlight implements IRenderable {
 
-    private static final double OFFSET = 0.01;
+    static final double OFFSET = 0.01;
     private static final int PERIOD = 2000;
     public transient double distance;
     boolean[][][] filled = new boolean[3][3][3];
@@ -59,8 +59,15 @@ public class Highlight implements IRenderable {
         this.phase = phase;
     }
 
+    /**
+     * @return the alpha of the fade animation right now, for a highlight with the given phase.
+     */
+    static float alpha(float phase) {
+        return (1f - ((System.currentTimeMillis()) % PERIOD) / (float) PERIOD + phase) % 1f;
+    }
+
     public void render(Vector2i offset) {
-        final float alpha = (1f - ((System.currentTimeMillis()) % PERIOD) / (float) PERIOD + phase) % 1f;
+        final float alpha = alpha(phase);
         glColor4f(color.getX(), color.getY(), color.getZ(), alpha);
         drawBoxLines(offset);
         glColor4f(color.getX(), color.getY(), color.getZ(), alpha / 4 + 0.1f);
@@ -174,6 +181,17 @@ public class Highlight implements IRenderable {
         this.filled = filled;
     }
 
+    int countFilledFaces() {
+        int count = 0;
+        if (filled[0][1][1]) count++;
+        if (filled[1][0][1]) count++;
+        if (filled[1][1][0]) count++;
+        if (filled[2][1][1]) count++;
+        if (filled[1][2][1]) count++;
+        if (filled[1][1][2]) count++;
+        return count;
+    }
+
     public Vector3f getColor() {
         return color;
     }
@@ -0,0 +1,50 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.foxdenstudio.sponge.foxcore.mod.render;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One complete set of highlights, ready to draw.
+ * <p>
+ * Batches are built off the render thread by {@link HighlightBatchBuilder} and are never modified afterwards,
+ * so handing one over only takes a reference swap.
+ */
+public final class HighlightBatch {
+
+    public static final HighlightBatch EMPTY = new HighlightBatch(Collections.<Highlight>emptyList(), HighlightMesh.empty(), null);
+
+    public final List<Highlight> highlights;
+    public final HighlightMesh mesh;
+    // Back to front from the camera position when the batch was built, or null for an empty batch.
+    public final HighlightMesh.FaceOrder faceOrder;
+
+    HighlightBatch(List<Highlight> highlights, HighlightMesh mesh, HighlightMesh.FaceOrder faceOrder) {
+        this.highlights = Collections.unmodifiableList(highlights);
+        this.mesh = mesh;
+        this.faceOrder = faceOrder;
+    }
+}
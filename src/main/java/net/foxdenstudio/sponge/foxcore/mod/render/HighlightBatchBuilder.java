@@ -0,0 +1,217 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.foxdenstudio.sponge.foxcore.mod.render;
+
+import com.flowpowered.math.vector.Vector3f;
+import com.flowpowered.math.vector.Vector3i;
+import net.foxdenstudio.sponge.foxcore.mod.FoxCoreClientMain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Builds {@link HighlightBatch}es on a worker thread.
+ * <p>
+ * Position updates can arrive in bursts from the network thread. Only the newest update is ever built;
+ * anything submitted while the worker is busy replaces the update that was waiting.
+ * The render thread collects finished batches with {@link #take()}, which never blocks.
+ * <p>
+ * Mesh faces come out back to front from the camera position the worker last saw.
+ * Once the camera moves past a threshold, the worker re-sorts them and hands the new order out through {@link #takeFaceOrder()}.
+ */
+public class HighlightBatchBuilder {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FoxCore Highlight Builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicReference<Update> pending = new AtomicReference<>();
+    private final AtomicReference<HighlightBatch> ready = new AtomicReference<>();
+    private final AtomicReference<HighlightMesh.FaceOrder> readyOrder = new AtomicReference<>();
+    private final AtomicBoolean resortQueued = new AtomicBoolean();
+
+    // Last known camera position, so batches come out nearly sorted for the render thread.
+    private volatile double cameraX, cameraY, cameraZ;
+    // Camera position the last re-sort was queued for. Only touched by the thread calling setCamera.
+    private double sortedX, sortedY, sortedZ;
+    // Sorter for the newest mesh. Only touched on the worker thread.
+    private HighlightMesh.FaceSorter faceSorter;
+
+    private final AtomicLong batchesBuilt = new AtomicLong();
+    private final AtomicLong updatesSkipped = new AtomicLong();
+
+    /**
+     * Queues a new set of positions to build. The lists are copied, so the caller may keep modifying them.
+     * Null or empty lists clear the highlights.
+     */
+    public void submit(List<Vector3i> positions, List<Vector3f> colors) {
+        Update update = positions == null || colors == null || positions.isEmpty()
+                ? Update.EMPTY
+                : new Update(new ArrayList<>(positions), new ArrayList<>(colors));
+        if (pending.getAndSet(update) == null) {
+            executor.execute(this::buildPending);
+        } else {
+            updatesSkipped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the newest batch finished since the last call, or null if there is none.
+     */
+    public HighlightBatch take() {
+        return ready.getAndSet(null);
+    }
+
+    /**
+     * @return the newest re-sorted face order finished since the last call, or null if there is none.
+     * It may belong to an older mesh than the one being drawn.
+     */
+    public HighlightMesh.FaceOrder takeFaceOrder() {
+        return readyOrder.getAndSet(null);
+    }
+
+    /**
+     * Updates the camera position, and queues a re-sort of the mesh faces if it has moved far enough.
+     */
+    public void setCamera(double x, double y, double z) {
+        this.cameraX = x;
+        this.cameraY = y;
+        this.cameraZ = z;
+        final double dx = x - sortedX, dy = y - sortedY, dz = z - sortedZ;
+        if (dx * dx + dy * dy + dz * dz >= DepthSorter.DEFAULT_THRESHOLD * DepthSorter.DEFAULT_THRESHOLD
+                && !resortQueued.getAndSet(true)) {
+            sortedX = x;
+            sortedY = y;
+            sortedZ = z;
+            executor.execute(this::resort);
+        }
+    }
+
+    public long getBatchesBuilt() {
+        return batchesBuilt.get();
+    }
+
+    public long getUpdatesSkipped() {
+        return updatesSkipped.get();
+    }
+
+    private void buildPending() {
+        Update update = pending.getAndSet(null);
+        if (update == null) return;
+        try {
+            ready.set(build(update));
+            batchesBuilt.incrementAndGet();
+        } catch (Exception e) {
+            FoxCoreClientMain.logger.error("Error building highlights", e);
+        }
+    }
+
+    private void resort() {
+        resortQueued.set(false);
+        if (faceSorter == null) return;
+        try {
+            HighlightMesh.FaceOrder order = faceSorter.sort(cameraX, cameraY, cameraZ);
+            if (order != null) readyOrder.set(order);
+        } catch (Exception e) {
+            FoxCoreClientMain.logger.error("Error sorting highlights", e);
+        }
+    }
+
+    private HighlightBatch build(Update update) {
+        if (update.positions.isEmpty()) {
+            faceSorter = null;
+            return HighlightBatch.EMPTY;
+        }
+
+        Map<Vector3i, ColorBlender> posColorMap = new HashMap<>();
+        Iterator<Vector3i> posIt = update.positions.iterator();
+        Iterator<Vector3f> colorIt = update.colors.iterator();
+
+        while (posIt.hasNext() && colorIt.hasNext()) {
+            Vector3i pos = posIt.next();
+            Vector3f color = colorIt.next();
+            ColorBlender blender = posColorMap.get(pos);
+            if (blender != null) {
+                blender.blend(color);
+            } else {
+                posColorMap.put(pos, new ColorBlender(color));
+            }
+        }
+
+        List<Highlight> highlights = new ArrayList<>(posColorMap.size());
+        posColorMap.forEach((pos, blender) -> highlights.add(new Highlight(pos, blender.color)));
+        HighlightMesh mesh = HighlightMesher.mesh(highlights);
+        faceSorter = new HighlightMesh.FaceSorter(mesh);
+        HighlightMesh.FaceOrder faceOrder = faceSorter.sort(cameraX, cameraY, cameraZ);
+        new DepthSorter<Highlight>((highlight, x, y, z) ->
+                highlight.distance = highlight.getPos().toDouble().add(0.5, 0.5, 0.5).distanceSquared(x, y, z))
+                .sort(highlights, 0, cameraX, cameraY, cameraZ);
+        return new HighlightBatch(highlights, mesh, faceOrder);
+    }
+
+    private static final class Update {
+        static final Update EMPTY = new Update(Collections.<Vector3i>emptyList(), Collections.<Vector3f>emptyList());
+
+        final List<Vector3i> positions;
+        final List<Vector3f> colors;
+
+        Update(List<Vector3i> positions, List<Vector3f> colors) {
+            this.positions = positions;
+            this.colors = colors;
+        }
+    }
+
+    private static class ColorBlender {
+        Vector3f color;
+        int weight;
+
+        public ColorBlender(Vector3f color) {
+            this.color = color;
+            weight = 1;
+        }
+
+        public void blend(Vector3f newColor) {
+            final float a = ((float) weight) / (weight + 1),
+                    b = 1.0f / (weight + 1);
+            color = new Vector3f(
+                    a * color.getX() + b * newColor.getX(),
+                    a * color.getY() + b * newColor.getY(),
+                    a * color.getZ() + b * newColor.getZ()
+            );
+            weight++;
+        }
+    }
+}
@@ -29,13 +29,14 @@ import com.flowpowered.math.vector.Vector2i;
 import net.minecraft.client.Minecraft;
 
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
 
 import static org.lwjgl.opengl.GL11.*;
 
 public class HighlightList extends ArrayList<Highlight> implements IRenderable {
 
     Minecraft mc;
+    private final DepthSorter<Highlight> sorter = new DepthSorter<>((highlight, x, y, z) ->
+            highlight.distance = highlight.getPos().toDouble().add(0.5, 0.5, 0.5).distanceSquared(x, y, z));
 
     public HighlightList(Minecraft mc) {
         this.mc = mc;
@@ -54,20 +55,13 @@ public class HighlightList extends ArrayList<Highlight> implements IRenderable {
         //glDisable(GL_DEPTH_TEST);
 
         glLineWidth(2f);
-        try {
-            this.forEach(highlight -> highlight.render(offset));
-        } catch (ConcurrentModificationException ignored) {
-        }
+        this.forEach(highlight -> highlight.render(offset));
 
         //glEnable(GL_DEPTH_TEST);
         glPopAttrib();
     }
 
     public void sortZ(double x, double y, double z) {
-        try {
-            forEach(highlight -> highlight.distance = highlight.getPos().toDouble().add(0.5, 0.5, 0.5).distanceSquared(x, y, z));
-            this.sort((o1, o2) -> o1.distance > o2.distance ? -1 : (o1.distance < o2.distance ? 1 : 0));
-        } catch (ConcurrentModificationException ignored) {
-        }
+        sorter.sort(this, modCount, x, y, z);
     }
 }
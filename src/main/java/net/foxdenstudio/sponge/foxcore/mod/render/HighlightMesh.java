@@ -0,0 +1,199 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.mod.render;
+
+import com.flowpowered.math.vector.Vector3f;
+import com.flowpowered.math.vector.Vector3i;
+import org.lwjgl.BufferUtils;
+
+import javax.annotation.Nullable;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vertex data for a set of highlights, built by {@link HighlightMesher} and uploaded by {@link HighlightRenderer}.
+ * <p>
+ * Vertices are interleaved as x, y, z, r, g, b floats. Positions are relative to {@link #origin}
+ * so they stay small enough for float precision anywhere in the world.
+ * Building a mesh doesn't touch OpenGL, so it can be done off the render thread.
+ * <p>
+ * Faces are translucent, so they have to be drawn back to front. Their vertices stay in build order,
+ * and a {@link FaceSorter} produces the draw order for a camera position as an index list.
+ */
+public class HighlightMesh {
+
+    public static final int FLOATS_PER_VERTEX = 6;
+    public static final int STRIDE = FLOATS_PER_VERTEX * 4;
+
+    public final Vector3i origin;
+    public final FloatBuffer lines;
+    public final int lineVertices;
+    public final FloatBuffer quads;
+    public final int quadVertices;
+    // Centre of each quad relative to the origin, as x, y, z floats.
+    private final float[] faceCenters;
+
+    private HighlightMesh(Vector3i origin, FloatBuffer lines, int lineVertices, FloatBuffer quads, int quadVertices, float[] faceCenters) {
+        this.origin = origin;
+        this.lines = lines;
+        this.lineVertices = lineVertices;
+        this.quads = quads;
+        this.quadVertices = quadVertices;
+        this.faceCenters = faceCenters;
+    }
+
+    public static HighlightMesh empty() {
+        return new Builder(Vector3i.ZERO).build();
+    }
+
+    /**
+     * Collects vertices relative to an origin. Coordinates passed in are world coordinates.
+     */
+    public static class Builder {
+
+        private final Vector3i origin;
+        private float[] lines = new float[FLOATS_PER_VERTEX * 64];
+        private int lineFloats = 0;
+        private float[] quads = new float[FLOATS_PER_VERTEX * 64];
+        private int quadFloats = 0;
+        private float[] faceCenters = new float[3 * 16];
+        private int faceCenterFloats = 0;
+
+        public Builder(Vector3i origin) {
+            this.origin = origin;
+        }
+
+        public Builder quad(Vector3f color, double[] a, double[] b, double[] c, double[] d) {
+            if (quadFloats + 4 * FLOATS_PER_VERTEX > quads.length) quads = Arrays.copyOf(quads, quads.length * 2);
+            quadFloats = vertex(quads, quadFloats, color, a);
+            quadFloats = vertex(quads, quadFloats, color, b);
+            quadFloats = vertex(quads, quadFloats, color, c);
+            quadFloats = vertex(quads, quadFloats, color, d);
+            if (faceCenterFloats + 3 > faceCenters.length) faceCenters = Arrays.copyOf(faceCenters, faceCenters.length * 2);
+            faceCenters[faceCenterFloats++] = (float) ((a[0] + c[0]) / 2 - origin.getX());
+            faceCenters[faceCenterFloats++] = (float) ((a[1] + c[1]) / 2 - origin.getY());
+            faceCenters[faceCenterFloats++] = (float) ((a[2] + c[2]) / 2 - origin.getZ());
+            return this;
+        }
+
+        public Builder line(Vector3f color, double[] a, double[] b) {
+            if (lineFloats + 2 * FLOATS_PER_VERTEX > lines.length) lines = Arrays.copyOf(lines, lines.length * 2);
+            lineFloats = vertex(lines, lineFloats, color, a);
+            lineFloats = vertex(lines, lineFloats, color, b);
+            return this;
+        }
+
+        private int vertex(float[] array, int index, Vector3f color, double[] pos) {
+            array[index++] = (float) (pos[0] - origin.getX());
+            array[index++] = (float) (pos[1] - origin.getY());
+            array[index++] = (float) (pos[2] - origin.getZ());
+            array[index++] = color.getX();
+            array[index++] = color.getY();
+            array[index++] = color.getZ();
+            return index;
+        }
+
+        public HighlightMesh build() {
+            FloatBuffer lineBuffer = BufferUtils.createFloatBuffer(lineFloats);
+            lineBuffer.put(lines, 0, lineFloats).flip();
+            FloatBuffer quadBuffer = BufferUtils.createFloatBuffer(quadFloats);
+            quadBuffer.put(quads, 0, quadFloats).flip();
+            return new HighlightMesh(origin, lineBuffer, lineFloats / FLOATS_PER_VERTEX, quadBuffer, quadFloats / FLOATS_PER_VERTEX,
+                    Arrays.copyOf(faceCenters, faceCenterFloats));
+        }
+    }
+
+    /**
+     * The order to draw a mesh's quads in, as four vertex indices per quad.
+     */
+    public static final class FaceOrder {
+        public final HighlightMesh mesh;
+        public final IntBuffer indices;
+
+        private FaceOrder(HighlightMesh mesh, IntBuffer indices) {
+            this.mesh = mesh;
+            this.indices = indices;
+        }
+    }
+
+    /**
+     * Orders the quads of one mesh farthest first with a {@link DepthSorter}, so small camera moves
+     * only cost a nearly sorted pass. Not thread safe.
+     */
+    public static final class FaceSorter {
+
+        private final HighlightMesh mesh;
+        // Never changes size, so the sorter is always given the same modification count.
+        private final List<Face> faces;
+        private final DepthSorter<Face> sorter = new DepthSorter<>((face, x, y, z) -> face.distance = face.distanceSquared(x, y, z));
+
+        public FaceSorter(HighlightMesh mesh) {
+            this.mesh = mesh;
+            this.faces = new ArrayList<>(mesh.faceCenters.length / 3);
+            for (int i = 0; i < mesh.faceCenters.length / 3; i++) {
+                faces.add(new Face(i, mesh.faceCenters[i * 3], mesh.faceCenters[i * 3 + 1], mesh.faceCenters[i * 3 + 2]));
+            }
+        }
+
+        /**
+         * @param x the camera position in world coordinates.
+         * @return the new order, or null if the camera hasn't moved past the sorter's threshold since the last sort.
+         */
+        @Nullable
+        public FaceOrder sort(double x, double y, double z) {
+            if (!sorter.sort(faces, 0, x - mesh.origin.getX(), y - mesh.origin.getY(), z - mesh.origin.getZ())) return null;
+            IntBuffer indices = BufferUtils.createIntBuffer(faces.size() * 4);
+            for (Face face : faces) {
+                final int first = face.index * 4;
+                indices.put(first).put(first + 1).put(first + 2).put(first + 3);
+            }
+            indices.flip();
+            return new FaceOrder(mesh, indices);
+        }
+    }
+
+    private static final class Face {
+        final int index;
+        final float x, y, z;
+        double distance;
+
+        Face(int index, float x, float y, float z) {
+            this.index = index;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        double distanceSquared(double cameraX, double cameraY, double cameraZ) {
+            final double dx = x - cameraX, dy = y - cameraY, dz = z - cameraZ;
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.foxdenstudio.sponge.foxcore.mod.render;
+
+import com.flowpowered.math.vector.Vector3f;
+import com.flowpowered.math.vector.Vector3i;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns a set of highlights into a {@link HighlightMesh} with as few faces as possible.
+ * <p>
+ * Block positions are put in a spatial hash so each highlight can look up its six neighbours.
+ * A face shared by two highlighted blocks is never visible, so it is dropped
+ * and the matching entry in {@link Highlight#filled} is set for the immediate mode path.
+ * The remaining faces are grouped by the plane they lie in and greedily merged into the largest
+ * rectangles of one colour, which are drawn with their outline.
+ * A solid cuboid of any size ends up as six quads.
+ */
+public final class HighlightMesher {
+
+    // Neighbour offsets for the six faces, in the same order as the face axis and direction below.
+    private static final int[][] FACES = {
+            {-1, 0, 0}, {1, 0, 0},
+            {0, -1, 0}, {0, 1, 0},
+            {0, 0, -1}, {0, 0, 1}
+    };
+
+    private HighlightMesher() {
+    }
+
+    public static HighlightMesh mesh(Collection<Highlight> highlights) {
+        if (highlights.isEmpty()) return HighlightMesh.empty();
+
+        Map<Long, Highlight> occupancy = new HashMap<>(highlights.size() * 2);
+        for (Highlight highlight : highlights) {
+            occupancy.put(pack(highlight.pos.getX(), highlight.pos.getY(), highlight.pos.getZ()), highlight);
+        }
+
+        HighlightMesh.Builder builder = new HighlightMesh.Builder(highlights.iterator().next().pos);
+        for (int face = 0; face < FACES.length; face++) {
+            final int axis = face / 2;
+            final int[] dir = FACES[face];
+            // Faces of this direction, keyed by the plane they lie in.
+            Map<Integer, Map<Long, Highlight>> planes = new HashMap<>();
+            for (Highlight highlight : highlights) {
+                Vector3i pos = highlight.pos;
+                boolean hidden = occupancy.containsKey(pack(pos.getX() + dir[0], pos.getY() + dir[1], pos.getZ() + dir[2]));
+                highlight.filled[1 + dir[0]][1 + dir[1]][1 + dir[2]] = hidden;
+                if (hidden) continue;
+                int[] coords = {pos.getX(), pos.getY(), pos.getZ()};
+                planes.computeIfAbsent(coords[axis], k -> new HashMap<>())
+                        .put(packCell(coords[(axis + 1) % 3], coords[(axis + 2) % 3]), highlight);
+            }
+            for (Map.Entry<Integer, Map<Long, Highlight>> plane : planes.entrySet()) {
+                mergePlane(builder, axis, dir[axis] > 0, plane.getKey(), plane.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Greedily covers the cells of one plane with rectangles.
+     * Cells are visited in row order; each rectangle grows along u as far as the colour allows,
+     * then along v for as long as the whole row below matches.
+     */
+    private static void mergePlane(HighlightMesh.Builder builder, int axis, boolean positive, int level, Map<Long, Highlight> cells) {
+        List<Long> order = new ArrayList<>(cells.keySet());
+        Collections.sort(order, (a, b) -> {
+            int compare = Integer.compare(cellV(a), cellV(b));
+            return compare != 0 ? compare : Integer.compare(cellU(a), cellU(b));
+        });
+        Set<Long> used = new HashSet<>(cells.size() * 2);
+        for (Long cell : order) {
+            if (used.contains(cell)) continue;
+            final Vector3f color = cells.get(cell).color;
+            final int u = cellU(cell), v = cellV(cell);
+            int width = 1;
+            while (matches(cells, used, u + width, v, color)) width++;
+            int height = 1;
+            grow:
+            while (true) {
+                for (int i = 0; i < width; i++) {
+                    if (!matches(cells, used, u + i, v + height, color)) break grow;
+                }
+                height++;
+            }
+            for (int j = 0; j < height; j++) {
+                for (int i = 0; i < width; i++) {
+                    used.add(packCell(u + i, v + j));
+                }
+            }
+            emit(builder, axis, positive ? level + 1 + Highlight.OFFSET : level - Highlight.OFFSET,
+                    u - Highlight.OFFSET, v - Highlight.OFFSET,
+                    u + width + Highlight.OFFSET, v + height + Highlight.OFFSET, color);
+        }
+    }
+
+    private static boolean matches(Map<Long, Highlight> cells, Set<Long> used, int u, int v, Vector3f color) {
+        Long key = packCell(u, v);
+        Highlight highlight = cells.get(key);
+        return highlight != null && highlight.color.equals(color) && !used.contains(key);
+    }
+
+    private static void emit(HighlightMesh.Builder builder, int axis, double w, double u1, double v1, double u2, double v2, Vector3f color) {
+        double[] a = point(axis, w, u1, v1);
+        double[] b = point(axis, w, u2, v1);
+        double[] c = point(axis, w, u2, v2);
+        double[] d = point(axis, w, u1, v2);
+        builder.quad(color, a, b, c, d);
+        builder.line(color, a, b);
+        builder.line(color, b, c);
+        builder.line(color, c, d);
+        builder.line(color, d, a);
+    }
+
+    private static double[] point(int axis, double w, double u, double v) {
+        double[] point = new double[3];
+        point[axis] = w;
+        point[(axis + 1) % 3] = u;
+        point[(axis + 2) % 3] = v;
+        return point;
+    }
+
+    // Same layout as a block position: 26 bits of x, 12 bits of y and 26 bits of z.
+    private static long pack(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) y & 0xFFFL) << 26 | ((long) z & 0x3FFFFFFL);
+    }
+
+    private static long packCell(int u, int v) {
+        return (long) u << 32 | (v & 0xFFFFFFFFL);
+    }
+
+    private static int cellU(long cell) {
+        return (int) (cell >> 32);
+    }
+
+    private static int cellV(long cell) {
+        return (int) cell;
+    }
+}
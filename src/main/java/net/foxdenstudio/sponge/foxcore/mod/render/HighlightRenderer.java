@@ -0,0 +1,173 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.mod.render;
+
+import org.lwjgl.opengl.GLContext;
+
+import javax.annotation.Nullable;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL14.*;
+import static org.lwjgl.opengl.GL15.*;
+
+/**
+ * Draws a {@link HighlightMesh} from vertex buffers, with one draw call for the lines and one for the faces.
+ * <p>
+ * The fade animation is done with a constant blend alpha, so the vertex buffers are only uploaded when the mesh changes.
+ * Faces are drawn through an index buffer in the order last given to {@link #setFaceOrder}, which is replaced
+ * as the camera moves. Until a mesh has an order its faces are drawn in build order.
+ * All methods except {@link #setMesh} must be called on the render thread.
+ */
+public class HighlightRenderer {
+
+    private volatile HighlightMesh pendingMesh;
+    private volatile HighlightMesh.FaceOrder pendingOrder;
+    private HighlightMesh mesh;
+    // Mesh the index buffer holds an order for.
+    private HighlightMesh orderedMesh;
+    private int lineBuffer = 0;
+    private int quadBuffer = 0;
+    private int indexBuffer = 0;
+
+    public static boolean isSupported() {
+        return GLContext.getCapabilities().OpenGL15;
+    }
+
+    /**
+     * Sets the mesh to draw, and optionally the order to draw its faces in.
+     * It's uploaded the next time the renderer draws, so this can be called from any thread.
+     */
+    public void setMesh(HighlightMesh mesh, @Nullable HighlightMesh.FaceOrder order) {
+        this.pendingOrder = order;
+        this.pendingMesh = mesh;
+    }
+
+    /**
+     * Sets the order to draw faces in. Orders for any mesh but the newest one are ignored.
+     */
+    public void setFaceOrder(HighlightMesh.FaceOrder order) {
+        HighlightMesh target = this.pendingMesh != null ? this.pendingMesh : this.mesh;
+        if (order.mesh == target) this.pendingOrder = order;
+    }
+
+    public void render(double cameraX, double cameraY, double cameraZ) {
+        HighlightMesh pending = this.pendingMesh;
+        if (pending != null) {
+            this.pendingMesh = null;
+            upload(pending);
+        }
+        HighlightMesh.FaceOrder order = this.pendingOrder;
+        if (order != null) {
+            this.pendingOrder = null;
+            if (order.mesh == mesh) upload(order);
+        }
+        if (mesh == null || (mesh.lineVertices == 0 && mesh.quadVertices == 0)) return;
+
+        final float alpha = Highlight.alpha(0f);
+
+        glPushAttrib(GL_ENABLE_BIT | GL_COLOR_BUFFER_BIT | GL_CURRENT_BIT | GL_DEPTH_BUFFER_BIT | GL_LINE_BIT | GL_HINT_BIT);
+        glPushClientAttrib(GL_CLIENT_VERTEX_ARRAY_BIT);
+        glPushMatrix();
+
+        glDisable(GL_LIGHTING);
+        glDisable(GL_TEXTURE_2D);
+        glDisable(GL_ALPHA_TEST);
+        // Merged faces are wound by plane, not by facing.
+        glDisable(GL_CULL_FACE);
+        glEnable(GL_BLEND);
+        glBlendFunc(GL_CONSTANT_ALPHA, GL_ONE_MINUS_CONSTANT_ALPHA);
+        glDepthMask(false);
+        glEnable(GL_LINE_SMOOTH);
+        glHint(GL_LINE_SMOOTH_HINT, GL_NICEST);
+        glLineWidth(2f);
+
+        glTranslated(mesh.origin.getX() - cameraX, mesh.origin.getY() - cameraY, mesh.origin.getZ() - cameraZ);
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glEnableClientState(GL_COLOR_ARRAY);
+
+        glBlendColor(0f, 0f, 0f, alpha);
+        draw(lineBuffer, GL_LINES, mesh.lineVertices);
+        glBlendColor(0f, 0f, 0f, alpha / 4 + 0.1f);
+        if (orderedMesh == mesh) {
+            drawIndexed(quadBuffer, indexBuffer, GL_QUADS, mesh.quadVertices);
+        } else {
+            draw(quadBuffer, GL_QUADS, mesh.quadVertices);
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glPopMatrix();
+        glPopClientAttrib();
+        glPopAttrib();
+    }
+
+    public void delete() {
+        if (lineBuffer != 0) glDeleteBuffers(lineBuffer);
+        if (quadBuffer != 0) glDeleteBuffers(quadBuffer);
+        if (indexBuffer != 0) glDeleteBuffers(indexBuffer);
+        lineBuffer = 0;
+        quadBuffer = 0;
+        indexBuffer = 0;
+        mesh = null;
+        orderedMesh = null;
+    }
+
+    private void upload(HighlightMesh mesh) {
+        if (lineBuffer == 0) lineBuffer = glGenBuffers();
+        if (quadBuffer == 0) quadBuffer = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, lineBuffer);
+        glBufferData(GL_ARRAY_BUFFER, mesh.lines, GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, quadBuffer);
+        glBufferData(GL_ARRAY_BUFFER, mesh.quads, GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        this.mesh = mesh;
+    }
+
+    private void upload(HighlightMesh.FaceOrder order) {
+        if (indexBuffer == 0) indexBuffer = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, order.indices, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+        this.orderedMesh = order.mesh;
+    }
+
+    private static void draw(int buffer, int mode, int vertices) {
+        if (vertices == 0) return;
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
+        glVertexPointer(3, GL_FLOAT, HighlightMesh.STRIDE, 0);
+        glColorPointer(3, GL_FLOAT, HighlightMesh.STRIDE, 12);
+        glDrawArrays(mode, 0, vertices);
+    }
+
+    private static void drawIndexed(int buffer, int indices, int mode, int vertices) {
+        if (vertices == 0) return;
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
+        glVertexPointer(3, GL_FLOAT, HighlightMesh.STRIDE, 0);
+        glColorPointer(3, GL_FLOAT, HighlightMesh.STRIDE, 12);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indices);
+        glDrawElements(mode, vertices, GL_UNSIGNED_INT, 0);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+}
@@ -35,10 +35,7 @@ import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import static org.lwjgl.opengl.GL11.*;
 
@@ -46,7 +43,11 @@ import static org.lwjgl.opengl.GL11.*;
 public class RenderHandler {
 
     private Minecraft mc;
+    // Only touched on the render thread. New batches from the builder replace its contents.
     private HighlightList list;
+    private final HighlightRenderer renderer = new HighlightRenderer();
+    private final HighlightBatchBuilder builder = new HighlightBatchBuilder();
+    private Boolean useBuffers;
 
     private byte red = 0;
 
@@ -66,6 +67,24 @@ public class RenderHandler {
         double playerX = player.prevPosX + (player.posX - player.prevPosX) * partialTicks;
         double playerY = player.prevPosY + (player.posY - player.prevPosY) * partialTicks;
         double playerZ = player.prevPosZ + (player.posZ - player.prevPosZ) * partialTicks;
+        builder.setCamera(playerX, playerY, playerZ);
+
+        HighlightBatch batch = builder.take();
+        if (batch != null) {
+            list.clear();
+            list.addAll(batch.highlights);
+            renderer.setMesh(batch.mesh, batch.faceOrder);
+        }
+        HighlightMesh.FaceOrder order = builder.takeFaceOrder();
+        if (order != null) renderer.setFaceOrder(order);
+
+        // Capabilities can only be checked once there is a GL context, i.e. on the render thread.
+        if (useBuffers == null) useBuffers = HighlightRenderer.isSupported();
+        if (useBuffers) {
+            renderer.render(playerX, playerY, playerZ);
+            return;
+        }
+
         list.sortZ(playerX, playerY, playerZ);
 
         glPushMatrix();
@@ -77,47 +96,14 @@ public class RenderHandler {
         glPopMatrix();
     }
 
+    /**
+     * Hands new positions to the background builder. Safe to call from any thread.
+     */
     public void updateList(List<Vector3i> posList, List<Vector3f> colorList) {
-        this.list.clear();
-        if (posList == null || colorList == null || posList.size() == 0) return;
-
-        Map<Vector3i, ColorBlender> posColorMap = new HashMap<>();
-        Iterator<Vector3i> posIt = posList.iterator();
-        Iterator<Vector3f> colorIt = colorList.iterator();
-
-        while (posIt.hasNext()) {
-            Vector3i pos = posIt.next();
-            Vector3f color = colorIt.next();
-            if (posColorMap.containsKey(pos)) {
-                posColorMap.get(pos).blend(color);
-            } else {
-                posColorMap.put(pos, new ColorBlender(color));
-            }
-        }
-
-        posColorMap.entrySet().forEach(entry -> this.list.add(new Highlight(entry.getKey(), entry.getValue().color)));
+        builder.submit(posList, colorList);
     }
 
-    private class ColorBlender {
-        Vector3f color;
-        int weight;
-
-        public ColorBlender(Vector3f color) {
-            this.color = color;
-            weight = 1;
-        }
-
-        public void blend(Vector3f newColor) {
-            final float a = ((float) weight) / (weight + 1),
-                    b = 1.0f / (weight + 1);
-            color = new Vector3f(
-                    a * color.getX() + b * newColor.getX(),
-                    a * color.getY() + b * newColor.getY(),
-                    a * color.getZ() + b * newColor.getZ()
-            );
-            weight++;
-        }
-
-
+    public HighlightBatchBuilder getBuilder() {
+        return builder;
     }
 }
@@ -1,5 +1,6 @@
 package net.foxdenstudio.sponge.foxcore.mod.rendernew.world;
 
+import net.foxdenstudio.sponge.foxcore.mod.render.DepthSorter;
 import net.foxdenstudio.sponge.foxcore.mod.rendernew.world.geometry.Geometry;
 
 import java.util.ArrayList;
@@ -10,13 +11,14 @@ import java.util.ConcurrentModificationException;
  */
 public class RenderList extends ArrayList<Geometry> {
 
+    private final DepthSorter<Geometry> sorter = new DepthSorter<>((geo, x, y, z) ->
+            geo.distance = geo.position.distanceSquared(x, y, z));
+
     public void sortZ(double x, double y, double z) {
         try {
-            for (Geometry geo : this) {
-                geo.distance = geo.position.distanceSquared(x, y, z);
-            }
-            this.sort((o1, o2) -> o1.distance > o2.distance ? -1 : (o1.distance < o2.distance ? 1 : 0));
-        } catch (ConcurrentModificationException ignored) {
+            sorter.sort(this, modCount, x, y, z);
+        } catch (ConcurrentModificationException | IndexOutOfBoundsException ignored) {
+            sorter.invalidate();
         }
     }
 }
@@ -42,7 +42,15 @@ public final class FCConfigManager {
     private static FCConfigManager instance;
 
     private boolean defaultHUDOn = true;
+    private int hudMutationsPerTick = 8;
     private ItemType defaultWandItemType = ItemTypes.GOLDEN_AXE;
+    private long stateIdleTimeout = 0;
+    private int rasterSpillThreshold = 1000000;
+    private int rasterCacheSections = 256;
+    private long metricsLogInterval = 0;
+    private int asyncCommandThreads = 2;
+    private int asyncCommandQueueSize = 16;
+    private long asyncCommandTimeout = 60;
 
     public FCConfigManager() {
         if (instance == null) instance = this;
@@ -72,11 +80,23 @@ public final class FCConfigManager {
         //--------------------------------------------------------------------------------------------------------------
 
         this.defaultHUDOn = root.getNode("defaultHUDOn").getBoolean(true);
+        this.hudMutationsPerTick = Math.max(1, root.getNode("hud", "mutationsPerTick").getInt(8));
 
         this.defaultWandItemType = Sponge.getRegistry()
                 .getType(ItemType.class, root.getNode("wands", "defaultWandItemType").getString(""))
                 .orElse(ItemTypes.GOLDEN_AXE);
 
+        this.stateIdleTimeout = root.getNode("state", "idleTimeout").getLong(0);
+
+        this.rasterSpillThreshold = root.getNode("selection", "raster", "spillThreshold").getInt(1000000);
+        this.rasterCacheSections = Math.max(1, root.getNode("selection", "raster", "cacheSections").getInt(256));
+
+        this.metricsLogInterval = root.getNode("metrics", "logInterval").getLong(0);
+
+        this.asyncCommandThreads = Math.max(1, root.getNode("commands", "async", "threads").getInt(2));
+        this.asyncCommandQueueSize = Math.max(1, root.getNode("commands", "async", "queueSize").getInt(16));
+        this.asyncCommandTimeout = root.getNode("commands", "async", "timeout").getLong(60);
+
         //--------------------------------------------------------------------------------------------------------------
     }
 
@@ -99,9 +119,29 @@ public final class FCConfigManager {
 
         root.getNode("defaultHUDOn").setValue(this.defaultHUDOn)
                 .setComment("Whether the scoreboard HUD is enabled by default or not.");
+        root.getNode("hud", "mutationsPerTick").setValue(this.hudMutationsPerTick)
+                .setComment("Scoreboard lines changed per player each tick. Larger HUD updates are spread over several ticks.");
 
         root.getNode("wands", "defaultWandItemType").setValue(this.defaultWandItemType.getId());
 
+        root.getNode("state", "idleTimeout").setValue(this.stateIdleTimeout)
+                .setComment("Minutes before the state of a source that isn't an online player is discarded. 0 disables this.");
+
+        root.getNode("selection", "raster", "spillThreshold").setValue(this.rasterSpillThreshold)
+                .setComment("Blocks a raster selection may hold on heap before it is moved to disk. 0 keeps every selection on heap.");
+        root.getNode("selection", "raster", "cacheSections").setValue(this.rasterCacheSections)
+                .setComment("16x16x16 sections of each on-disk raster selection kept in memory, at up to 512 bytes each.");
+
+        root.getNode("metrics", "logInterval").setValue(this.metricsLogInterval)
+                .setComment("Minutes between writing all metrics to the log. 0 disables this. \"/foxcore stats\" shows them at any time.");
+
+        root.getNode("commands", "async", "threads").setValue(this.asyncCommandThreads)
+                .setComment("Worker threads for commands that run off the main thread.");
+        root.getNode("commands", "async", "queueSize").setValue(this.asyncCommandQueueSize)
+                .setComment("Async commands that can wait for a worker before new ones are turned away.");
+        root.getNode("commands", "async", "timeout").setValue(this.asyncCommandTimeout)
+                .setComment("Seconds an async command may run before it is cancelled. 0 disables this.");
+
         //--------------------------------------------------------------------------------------------------------------
         try {
             loader.save(root);
@@ -114,7 +154,39 @@ public final class FCConfigManager {
         return defaultHUDOn;
     }
 
+    public int getHudMutationsPerTick() {
+        return hudMutationsPerTick;
+    }
+
     public ItemType getDefaultWandItemType() {
         return defaultWandItemType;
     }
+
+    public long getStateIdleTimeout() {
+        return stateIdleTimeout;
+    }
+
+    public int getRasterSpillThreshold() {
+        return rasterSpillThreshold;
+    }
+
+    public int getRasterCacheSections() {
+        return rasterCacheSections;
+    }
+
+    public long getMetricsLogInterval() {
+        return metricsLogInterval;
+    }
+
+    public int getAsyncCommandThreads() {
+        return asyncCommandThreads;
+    }
+
+    public int getAsyncCommandQueueSize() {
+        return asyncCommandQueueSize;
+    }
+
+    public long getAsyncCommandTimeout() {
+        return asyncCommandTimeout;
+    }
 }
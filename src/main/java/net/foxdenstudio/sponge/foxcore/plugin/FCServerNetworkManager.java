@@ -25,26 +25,50 @@
 
 package net.foxdenstudio.sponge.foxcore.plugin;
 
+import com.google.common.collect.ImmutableList;
 import net.foxdenstudio.sponge.foxcore.common.network.IClientPacketListener;
 import net.foxdenstudio.sponge.foxcore.common.network.IServerPacket;
 import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPrintStringPacket;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.Counter;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
 import org.spongepowered.api.Platform;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.game.state.GameStartingServerEvent;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.network.ChannelBinding;
 import org.spongepowered.api.network.PlayerConnection;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FCServerNetworkManager {
 
+    // Channel id of a payload that contains several packets, each prefixed with its channel, packet id and length.
+    private static final int BATCH_CHANNEL_ID = -2;
+    // Capability flag a client sends in its handshake if it can read batched payloads.
+    private static final int CAPABILITY_BATCH = 1;
+    // Channel id used to acknowledge a client's handshake reply. Clients resend the reply until they see this.
+    private static final int HANDSHAKE_ACK_CHANNEL_ID = -3;
+    // Capability flag sent to clients in the handshake, so they know to resend their reply until it's acknowledged.
+    private static final int SERVER_CAPABILITY_HANDSHAKE_ACK = 1;
+    // Remote ids at or above this are treated as unknown, so a client can't make us allocate huge dispatch tables.
+    private static final int MAX_REMOTE_ID = 1024;
+
     private static FCServerNetworkManager instance;
     private final Map<String, ServerChannel> serverChannels = new HashMap<>();
     private final Map<String, Integer> serverPacketIDMapping = new HashMap<>();
-    private final Map<Player, PlayerConfig> playerConfigs = new HashMap<>();
+    // Bytes sent and received per packet type, filled in as packets and listeners are registered.
+    private final Map<String, Counter> bytesOut = new HashMap<>();
+    private final Map<String, Counter> bytesIn = new ConcurrentHashMap<>();
+    private final Map<Player, PlayerConfig> playerConfigs = new ConcurrentHashMap<>();
+    private final AtomicLong packetsQueued = new AtomicLong();
+    private final AtomicLong packetsSent = new AtomicLong();
+    private final AtomicLong packetsCoalesced = new AtomicLong();
+    private final AtomicLong payloadsSent = new AtomicLong();
+    private final AtomicLong unknownPackets = new AtomicLong();
     private ChannelBinding.RawDataChannel rawDataChannel;
     private int nextAvailableChannelIndex = 1;
     private int nextAvailablePacketIndex = 0;
@@ -52,6 +76,12 @@ public class FCServerNetworkManager {
 
 
     private FCServerNetworkManager() {
+        FCMetrics metrics = FCMetrics.getInstance();
+        metrics.gauge("network.packets.queued", this::getPacketsQueued);
+        metrics.gauge("network.packets.sent", this::getPacketsSent);
+        metrics.gauge("network.packets.coalesced", this::getPacketsCoalesced);
+        metrics.gauge("network.payloads.sent", this::getPayloadsSent);
+        metrics.gauge("network.in.unknown", this::getUnknownPackets);
     }
 
     public static FCServerNetworkManager instance() {
@@ -69,7 +99,7 @@ public class FCServerNetworkManager {
                 if (channelID == -1) {
                     FoxCoreMain.instance().logger().info("DEBUG MESSAGE RECIEVED!");
 
-                } else if (channelID == 0) {
+                } else if (channelID == 0 && playerConfig != null) {
                     FoxCoreMain.instance().logger().info("Received CUI response from " + player.getName());
                     int channelCount = data.readInteger();
                     for (int i = 0; i < channelCount; i++) {
@@ -83,18 +113,35 @@ public class FCServerNetworkManager {
                         String serverPacketName = data.readString();
                         playerConfig.clientPacketMapping.put(serverPacketID, serverPacketName);
                     }
-                    playerConfig.hasClient = true;
-                    FoxCoreMain.instance().logger().info("Saying hi to \"" + player.getName() + "\"!");
-                    FoxCoreMain.instance().getFoxcoreNetworkChannel().sendPacket(player, new ServerPrintStringPacket("Yerf. ^^ (I got told to change it. Again. x3)"));
-                } else if (playerConfig.hasClient) {
-                    ServerChannel channel = this.serverChannels.get(playerConfig.clientChannelMapping.get(channelID));
-                    if (channel != null) {
-                        int packetID = data.readInteger();
-                        IClientPacketListener listener = channel.clientPacketListeners.get(playerConfig.clientPacketMapping.get(packetID));
-                        if (listener != null) {
-                            listener.read(data, player);
+                    // Older clients don't say which server packets they can read.
+                    if (data.available() > 0) {
+                        int listenedCount = data.readInteger();
+                        for (int i = 0; i < listenedCount; i++) {
+                            playerConfig.listenedPackets.add(data.readString());
                         }
                     }
+                    if (data.available() > 0) {
+                        playerConfig.capabilities = data.readInteger();
+                    }
+                    playerConfig.buildDispatchTable();
+                    rawDataChannel.sendTo(player, load -> load.writeInteger(HANDSHAKE_ACK_CHANNEL_ID));
+                    // Retried replies are acknowledged again, but only greeted once.
+                    if (!playerConfig.hasClient) {
+                        playerConfig.hasClient = true;
+                        FoxCoreMain.instance().logger().info("Saying hi to \"" + player.getName() + "\"!");
+                        FoxCoreMain.instance().getFoxcoreNetworkChannel().sendPacket(player, new ServerPrintStringPacket("Yerf. ^^ (I got told to change it. Again. x3)"));
+                    }
+                } else if (playerConfig != null && playerConfig.hasClient) {
+                    int packetID = data.readInteger();
+                    InboundRoute route = playerConfig.getRoute(channelID, packetID);
+                    if (route != null) {
+                        int size = data.available();
+                        route.listener.read(data, player);
+                        route.packetsIn.increment();
+                        route.bytesIn.add(size);
+                    } else {
+                        this.unknownPackets.incrementAndGet();
+                    }
                 }
             }
         });
@@ -121,6 +168,7 @@ public class FCServerNetworkManager {
                     load.writeInteger(entry.getValue());
                     load.writeString(entry.getKey());
                 }
+                load.writeInteger(SERVER_CAPABILITY_HANDSHAKE_ACK);
             });
         } else {
             FoxCoreMain.instance().logger().error("Tried to negotiate handshake before manager configurations has been locked!");
@@ -130,6 +178,7 @@ public class FCServerNetworkManager {
     public void registerPacket(String packetID) {
         if (!locked && !this.serverPacketIDMapping.containsKey(packetID)) {
             this.serverPacketIDMapping.put(packetID, this.nextAvailablePacketIndex++);
+            this.bytesOut.put(packetID, FCMetrics.getInstance().counter("network.out.bytes." + packetID));
         }
     }
 
@@ -147,9 +196,92 @@ public class FCServerNetworkManager {
         return playerConfig != null && playerConfig.hasClient;
     }
 
+    /**
+     * @return whether the player's client said during the handshake that it can read the given server packet.
+     */
+    public boolean canReceive(Player player, String packetID) {
+        PlayerConfig playerConfig = this.playerConfigs.get(player);
+        return playerConfig != null && playerConfig.hasClient && playerConfig.listenedPackets.contains(packetID);
+    }
+
+    /**
+     * Sends everything queued since the last tick. Each player gets at most one payload per tick
+     * if their client can read batches, otherwise one payload per packet.
+     */
+    public void flush() {
+        if (rawDataChannel == null) return;
+        for (Map.Entry<Player, PlayerConfig> entry : this.playerConfigs.entrySet()) {
+            List<QueuedPacket> packets = entry.getValue().drainQueue();
+            if (packets.isEmpty()) continue;
+            Player player = entry.getKey();
+            if (packets.size() > 1 && (entry.getValue().capabilities & CAPABILITY_BATCH) != 0) {
+                rawDataChannel.sendTo(player, load -> {
+                    load.writeInteger(BATCH_CHANNEL_ID);
+                    load.writeInteger(packets.size());
+                    for (QueuedPacket queued : packets) {
+                        load.writeInteger(queued.channelID);
+                        load.writeInteger(queued.packetID);
+                        int lengthIndex = load.writerIndex();
+                        load.writeInteger(0);
+                        queued.packet.write(load);
+                        int length = load.writerIndex() - lengthIndex - 4;
+                        load.setInteger(lengthIndex, length);
+                        queued.count(length);
+                    }
+                });
+                this.payloadsSent.incrementAndGet();
+            } else {
+                for (QueuedPacket queued : packets) {
+                    rawDataChannel.sendTo(player, load -> {
+                        load.writeInteger(queued.channelID);
+                        load.writeInteger(queued.packetID);
+                        int start = load.writerIndex();
+                        queued.packet.write(load);
+                        queued.count(load.writerIndex() - start);
+                    });
+                }
+                this.payloadsSent.addAndGet(packets.size());
+            }
+            this.packetsSent.addAndGet(packets.size());
+        }
+    }
+
+    public long getPacketsQueued() {
+        return packetsQueued.get();
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.get();
+    }
+
+    public long getPacketsCoalesced() {
+        return packetsCoalesced.get();
+    }
+
+    public long getPayloadsSent() {
+        return payloadsSent.get();
+    }
+
+    /**
+     * @return the number of inbound packets that didn't map to a known channel and listener.
+     */
+    public long getUnknownPackets() {
+        return unknownPackets.get();
+    }
+
     @Listener
     public void onServerStarting(GameStartingServerEvent event) {
         locked = true;
+        Sponge.getScheduler().createTaskBuilder()
+                .name("FoxCore packet flush")
+                .intervalTicks(1)
+                .execute(this::flush)
+                .submit(FoxCoreMain.instance());
+    }
+
+    @Listener
+    public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event) {
+        this.playerConfigs.remove(event.getTargetEntity());
     }
 
     public class ServerChannel {
@@ -158,22 +290,26 @@ public class FCServerNetworkManager {
         public final String name;
         public final int id;
         private final Map<String, IClientPacketListener> clientPacketListeners = new HashMap<>();
+        private final Counter packetsIn;
+        private final Counter packetsOut;
 
 
         private ServerChannel(String name, int id) {
             this.name = name;
             this.id = id;
+            this.packetsIn = FCMetrics.getInstance().counter("network.in.packets." + name);
+            this.packetsOut = FCMetrics.getInstance().counter("network.out.packets." + name);
         }
 
+        /**
+         * Queues a packet to be sent at the end of the tick.
+         * The packet is written when it is sent, so it shouldn't be changed after this.
+         */
         public void sendPacket(Player player, IServerPacket serverPacket) {
             if (rawDataChannel != null) {
                 PlayerConfig playerConfig = playerConfigs.get(player);
                 if (playerConfig != null && playerConfig.hasClient) {
-                    rawDataChannel.sendTo(player, load -> {
-                        load.writeInteger(id);
-                        load.writeInteger(serverPacketIDMapping.get(serverPacket.id()));
-                        serverPacket.write(load);
-                    });
+                    playerConfig.enqueue(new QueuedPacket(this, serverPacketIDMapping.get(serverPacket.id()), serverPacket));
                 }
             }
         }
@@ -181,6 +317,7 @@ public class FCServerNetworkManager {
         public void registerListener(String packetName, IClientPacketListener listener) {
             if (!clientPacketListeners.containsKey(packetName)) {
                 clientPacketListeners.put(packetName, listener);
+                bytesIn.computeIfAbsent(packetName, key -> FCMetrics.getInstance().counter("network.in.bytes." + key));
             }
         }
 
@@ -199,10 +336,100 @@ public class FCServerNetworkManager {
 
     }
 
+    private class QueuedPacket {
+        private final ServerChannel channel;
+        private final int channelID;
+        private final int packetID;
+        private final IServerPacket packet;
+
+        private QueuedPacket(ServerChannel channel, int packetID, IServerPacket packet) {
+            this.channel = channel;
+            this.channelID = channel.id;
+            this.packetID = packetID;
+            this.packet = packet;
+        }
+
+        private void count(int bytes) {
+            this.channel.packetsOut.increment();
+            bytesOut.get(this.packet.id()).add(bytes);
+        }
+    }
+
+    // A client packet listener along with the counters it is measured by, resolved once per handshake.
+    private static class InboundRoute {
+        private final IClientPacketListener listener;
+        private final Counter packetsIn;
+        private final Counter bytesIn;
+
+        private InboundRoute(IClientPacketListener listener, Counter packetsIn, Counter bytesIn) {
+            this.listener = listener;
+            this.packetsIn = packetsIn;
+            this.bytesIn = bytesIn;
+        }
+    }
+
     public class PlayerConfig {
         final Map<Integer, String> clientChannelMapping = new HashMap<>();
         final Map<Integer, String> clientPacketMapping = new HashMap<>();
+        final Set<String> listenedPackets = new HashSet<>();
+        private final List<QueuedPacket> queue = new ArrayList<>();
+        int capabilities = 0;
         public boolean hasClient = false;
+        // Route for each remote channel id and packet id, built once the handshake is received.
+        private InboundRoute[][] dispatchTable = new InboundRoute[0][];
+
+        private void buildDispatchTable() {
+            int channelSize = 0, packetSize = 0;
+            for (int id : clientChannelMapping.keySet()) {
+                if (id >= 0 && id < MAX_REMOTE_ID) channelSize = Math.max(channelSize, id + 1);
+            }
+            for (int id : clientPacketMapping.keySet()) {
+                if (id >= 0 && id < MAX_REMOTE_ID) packetSize = Math.max(packetSize, id + 1);
+            }
+            InboundRoute[][] table = new InboundRoute[channelSize][];
+            for (Map.Entry<Integer, String> channelEntry : clientChannelMapping.entrySet()) {
+                int channelID = channelEntry.getKey();
+                ServerChannel channel = serverChannels.get(channelEntry.getValue());
+                if (channel == null || channelID < 0 || channelID >= channelSize) continue;
+                InboundRoute[] routes = new InboundRoute[packetSize];
+                for (Map.Entry<Integer, String> packetEntry : clientPacketMapping.entrySet()) {
+                    int packetID = packetEntry.getKey();
+                    if (packetID < 0 || packetID >= packetSize) continue;
+                    IClientPacketListener listener = channel.clientPacketListeners.get(packetEntry.getValue());
+                    if (listener != null) {
+                        // Registering a listener also registers its byte counter, so this can't miss.
+                        routes[packetID] = new InboundRoute(listener, channel.packetsIn, bytesIn.get(packetEntry.getValue()));
+                    }
+                }
+                table[channelID] = routes;
+            }
+            this.dispatchTable = table;
+        }
+
+        private InboundRoute getRoute(int channelID, int packetID) {
+            InboundRoute[][] table = this.dispatchTable;
+            if (channelID < 0 || channelID >= table.length) return null;
+            InboundRoute[] routes = table[channelID];
+            if (routes == null || packetID < 0 || packetID >= routes.length) return null;
+            return routes[packetID];
+        }
+
+        private synchronized void enqueue(QueuedPacket packet) {
+            packetsQueued.incrementAndGet();
+            if (packet.packet.supersedesPrevious()) {
+                int before = queue.size();
+                queue.removeIf(queued -> queued.channelID == packet.channelID && queued.packetID == packet.packetID);
+                packetsCoalesced.addAndGet(before - queue.size());
+            }
+            queue.add(packet);
+        }
+
+        private synchronized List<QueuedPacket> drainQueue() {
+            if (queue.isEmpty()) return ImmutableList.of();
+            List<QueuedPacket> packets = new ArrayList<>(queue);
+            queue.clear();
+            return packets;
+        }
     }
 
 }
@@ -26,6 +26,7 @@
 package net.foxdenstudio.sponge.foxcore.plugin;
 
 import com.google.inject.Inject;
+import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPositionDeltaPacket;
 import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPositionPacket;
 import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPrintStringPacket;
 import net.foxdenstudio.sponge.foxcore.plugin.command.*;
@@ -34,6 +35,9 @@ import net.foxdenstudio.sponge.foxcore.plugin.command.misc.CommandWhat;
 import net.foxdenstudio.sponge.foxcore.plugin.command.misc.CommandWho;
 import net.foxdenstudio.sponge.foxcore.plugin.listener.WandBlockListener;
 import net.foxdenstudio.sponge.foxcore.plugin.listener.WandEntityListener;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
+import net.foxdenstudio.sponge.foxcore.plugin.scoreboard.FoxScoreboardManager;
+import net.foxdenstudio.sponge.foxcore.plugin.selection.RasterSelectionStore;
 import net.foxdenstudio.sponge.foxcore.plugin.state.FCStateManager;
 import net.foxdenstudio.sponge.foxcore.plugin.state.PositionStateField;
 import net.foxdenstudio.sponge.foxcore.plugin.util.Aliases;
@@ -195,6 +199,37 @@ public final class FoxCoreMain {
         } catch (Exception e) {
             logger.error("Error registering Network Manager Listeners", e);
         }
+        try {
+            manager.registerListeners(this, FCStateManager.instance());
+        } catch (Exception e) {
+            logger.error("Error registering State Manager Listeners", e);
+        }
+        try {
+            manager.registerListeners(this, FCWandRegistry.getInstance());
+        } catch (Exception e) {
+            logger.error("Error registering Wand Registry Listeners", e);
+        }
+        try {
+            manager.registerListeners(this, FCMetrics.getInstance());
+        } catch (Exception e) {
+            logger.error("Error registering Metrics Listeners", e);
+        }
+        try {
+            manager.registerListeners(this, FoxScoreboardManager.getInstance());
+        } catch (Exception e) {
+            logger.error("Error registering Scoreboard Manager Listeners", e);
+        }
+        try {
+            manager.registerListeners(this, RasterSelectionStore.getInstance());
+        } catch (Exception e) {
+            logger.error("Error registering Raster Selection Store Listeners", e);
+        }
+        try {
+            manager.registerListeners(this, CommandHUD.instance());
+            manager.registerListeners(this, CommandDebug.instance());
+        } catch (Exception e) {
+            logger.error("Error registering Command Listeners", e);
+        }
         try {
             manager.registerListener(this, InteractBlockEvent.class, Order.FIRST, new WandBlockListener());
         } catch (Exception e) {
@@ -240,6 +275,8 @@ public final class FoxCoreMain {
         fcDispatcher.register(new CommandWand(), "wand", "tool", "stick", "w");
         //fcDispatcher.register(new CommandTest(), "test");
         fcDispatcher.register(new CommandDebug(), "debug");
+        fcDispatcher.register(new CommandStats(), "stats", "metrics");
+        fcDispatcher.register(new CommandCancel(), "cancel", "abort");
         fcDispatcher.register(new CommandHUD(), "hud", "scoreboard");
 
         fcDispatcher.register(new CommandAbout(builder.build()), "about", "info");
@@ -255,6 +292,7 @@ public final class FoxCoreMain {
     private void registerPackets() {
         FCServerNetworkManager manager = FCServerNetworkManager.instance();
         manager.registerPacket(ServerPositionPacket.ID);
+        manager.registerPacket(ServerPositionDeltaPacket.ID);
         manager.registerPacket(ServerPrintStringPacket.ID);
     }
 
@@ -0,0 +1,52 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command;
+
+import org.spongepowered.api.command.CommandResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Returned by commands that run on {@link FCCommandExecutor}'s workers.
+ * The command has only been queued, so the counts of this result are all empty.
+ * The real result completes {@link #getFuture()} once the command is done.
+ */
+public class AsyncCommandResult extends CommandResult {
+
+    private final CompletableFuture<CommandResult> future;
+
+    AsyncCommandResult(CompletableFuture<CommandResult> future) {
+        super(null, null, null, null, null);
+        this.future = future;
+    }
+
+    /**
+     * Completes with the command's result, or is cancelled if the command was cancelled or timed out.
+     */
+    public CompletableFuture<CommandResult> getFuture() {
+        return future;
+    }
+}
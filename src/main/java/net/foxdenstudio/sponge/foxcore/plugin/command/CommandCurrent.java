@@ -57,15 +57,15 @@ public class CommandCurrent extends FCCommandBase {
         int flag = 0;
         Collection<IStateField> fields;
         if (parse.args.length == 0) {
-            fields = FCStateManager.instance().getStateMap().get(source).getMap().values();
+            fields = FCStateManager.instance().getState(source).getMap().values();
         } else {
             fields = new ArrayList<>();
             for (String alias : parse.args) {
-                Optional<IStateField> temp = FCStateManager.instance().getStateMap().get(source).getOrCreateFromAlias(alias);
+                Optional<IStateField> temp = FCStateManager.instance().getState(source).getOrCreateFromAlias(alias);
                 if (temp.isPresent()) fields.add(temp.get());
             }
             if (fields.isEmpty()) {
-                fields = FCStateManager.instance().getStateMap().get(source).getMap().values();
+                fields = FCStateManager.instance().getState(source).getMap().values();
             }
         }
         IStateField field;
@@ -26,7 +26,8 @@
 package net.foxdenstudio.sponge.foxcore.plugin.command;
 
 import com.google.common.collect.ImmutableList;
-import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
+import net.foxdenstudio.sponge.foxcore.common.util.LoadingCacheMap;
+import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
@@ -45,7 +46,9 @@ import java.util.Optional;
 public class CommandDebug extends FCCommandBase {
 
     private static CommandDebug instance;
-    private Map<CommandSource, Boolean> debug = new CacheMap<>((k, m) -> Boolean.FALSE);
+    // Keyed by FCPUtil.getSourceKey.
+    private final LoadingCacheMap<Object, Boolean> debug = LoadingCacheMap.builder()
+            .<Object, Boolean>build(key -> Boolean.FALSE);
 
     public CommandDebug() {
         if (instance == null) instance = this;
@@ -61,11 +64,12 @@ public class CommandDebug extends FCCommandBase {
             source.sendMessage(Text.of(TextColors.RED, "You don't have permission to use this command!"));
             return CommandResult.empty();
         }
-        if (debug.get(source).equals(Boolean.FALSE)) {
-            debug.put(source, Boolean.TRUE);
+        Object key = FCPUtil.getSourceKey(source);
+        if (debug.get(key).equals(Boolean.FALSE)) {
+            debug.put(key, Boolean.TRUE);
             source.sendMessage(Text.of(TextColors.GREEN, "Debug mode enabled!"));
         } else {
-            debug.remove(source);
+            debug.remove(key);
             source.sendMessage(Text.of(TextColors.RED, "Debug mode disabled!"));
         }
         return CommandResult.empty();
@@ -97,12 +101,15 @@ public class CommandDebug extends FCCommandBase {
         return Text.of("debug");
     }
 
-    public Map<CommandSource, Boolean> getDebug() {
+    /**
+     * @return whether each source has debug mode on, keyed by {@link FCPUtil#getSourceKey(CommandSource)}.
+     */
+    public Map<Object, Boolean> getDebug() {
         return debug;
     }
 
     @Listener
     public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event) {
-        this.debug.remove(event.getTargetEntity());
+        this.debug.remove(FCPUtil.getSourceKey(event.getTargetEntity()));
     }
 }
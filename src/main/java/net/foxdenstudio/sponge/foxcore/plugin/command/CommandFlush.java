@@ -53,7 +53,7 @@ public class CommandFlush extends FCCommandBase {
             source.sendMessage(Text.of(TextColors.RED, "You don't have permission to use this command!"));
             return CommandResult.empty();
         }
-        SourceState state = FCStateManager.instance().getStateMap().get(source);
+        SourceState state = FCStateManager.instance().getState(source);
         if (arguments.isEmpty()) {
             state.flush();
         } else {
@@ -1,15 +1,19 @@
 package net.foxdenstudio.sponge.foxcore.plugin.command;
 
 import com.google.common.collect.ImmutableList;
-import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
+import net.foxdenstudio.sponge.foxcore.common.util.LoadingCacheMap;
 import net.foxdenstudio.sponge.foxcore.plugin.FCConfigManager;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
+import net.foxdenstudio.sponge.foxcore.plugin.state.FCStateManager;
 import net.foxdenstudio.sponge.foxcore.plugin.util.Aliases;
+import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.scoreboard.Scoreboard;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
@@ -22,6 +26,7 @@ import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Stream;
 
 /**
@@ -33,8 +38,11 @@ public class CommandHUD extends FCCommandBase {
 
     private static CommandHUD instance;
 
-    private Map<Player, Boolean> isHUDEnabled = new CacheMap<>((k, m) -> FCConfigManager.getInstance().isDefaultHUDOn() &&
-            k instanceof Player && testPermission((Player) k));
+    // Keyed by player UUID. Only online players get a default.
+    private final LoadingCacheMap<Object, Boolean> isHUDEnabled = LoadingCacheMap.builder()
+            .<Object, Boolean>build(key -> Sponge.getServer().getPlayer((UUID) key)
+                    .map(player -> FCConfigManager.getInstance().isDefaultHUDOn() && testPermission(player))
+                    .orElse(null));
 
     public CommandHUD() {
         if (instance == null) instance = this;
@@ -55,16 +63,17 @@ public class CommandHUD extends FCCommandBase {
             if (parse.args.length == 0) {
                 Text.Builder builder = Text.builder();
                 builder.append(Text.of("Your HUD is currently "));
-                if (isHUDEnabled.get(source)) builder.append(Text.of(TextColors.GREEN, "on"));
+                if (isHUDEnabled.get(FCPUtil.getSourceKey(source))) builder.append(Text.of(TextColors.GREEN, "on"));
                 else builder.append(Text.of(TextColors.RED, "off"));
                 builder.append(Text.of(TextColors.RESET, "!"));
                 source.sendMessage(builder.build());
             } else {
                 if (parse.args[0].equalsIgnoreCase("on")) {
-                    isHUDEnabled.put((Player) source, true);
+                    isHUDEnabled.put(FCPUtil.getSourceKey(source), true);
+                    FCStateManager.instance().getState(source).updateScoreboard();
                     source.sendMessage(Text.of("Turned ", TextColors.GREEN, "on", TextColors.RESET, " the HUD!"));
                 } else if (parse.args[0].equalsIgnoreCase("off")) {
-                    isHUDEnabled.put((Player) source, false);
+                    isHUDEnabled.put(FCPUtil.getSourceKey(source), false);
                     Optional<Scoreboard> serverScoreboard = Sponge.getServer().getServerScoreboard();
                     if (serverScoreboard.isPresent()) {
                         ((Player) source).setScoreboard(serverScoreboard.get());
@@ -129,7 +138,15 @@ public class CommandHUD extends FCCommandBase {
         return Text.of("hud [on|off|reset]");
     }
 
-    public Map<Player, Boolean> getIsHUDEnabled() {
+    /**
+     * @return whether each player has the HUD on, keyed by {@link FCPUtil#getSourceKey(CommandSource)}.
+     */
+    public Map<Object, Boolean> getIsHUDEnabled() {
         return isHUDEnabled;
     }
+
+    @Listener
+    public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event) {
+        this.isHUDEnabled.remove(event.getTargetEntity().getUniqueId());
+    }
 }
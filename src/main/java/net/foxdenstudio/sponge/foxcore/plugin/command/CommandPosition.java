@@ -52,7 +52,7 @@ public class CommandPosition extends FCCommandBase {
             source.sendMessage(Text.of(TextColors.RED, "You don't have permission to use this command!"));
             return CommandResult.empty();
         }
-        SourceState state = FCStateManager.instance().getStateMap().get(source);
+        SourceState state = FCStateManager.instance().getState(source);
         PositionStateField positionsField = (PositionStateField) state.getOrCreate(PositionStateField.ID).get();
         ProcessResult result = positionsField.add(source, arguments);
         if (result.isSuccess()) {
@@ -83,7 +83,7 @@ public class CommandPosition extends FCCommandBase {
     @Override
     public List<String> getSuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws CommandException {
         if (!testPermission(source)) return ImmutableList.of();
-        PositionStateField positionsField = (PositionStateField) FCStateManager.instance().getStateMap().get(source).getOrCreate(PositionStateField.ID).get();
+        PositionStateField positionsField = (PositionStateField) FCStateManager.instance().getState(source).getOrCreate(PositionStateField.ID).get();
         return positionsField.addSuggestions(source, arguments);
     }
 
@@ -63,7 +63,7 @@ public class CommandState extends FCCommandBase {
                     .build());
             return CommandResult.empty();
         }
-        SourceState sourceState = FCStateManager.instance().getStateMap().get(source);
+        SourceState sourceState = FCStateManager.instance().getState(source);
         Optional<IStateField> optField = sourceState.getOrCreateFromAlias(parse.args[0]);
         if (!optField.isPresent())
             throw new CommandException(Text.of("\"" + parse.args[0] + "\" is not a valid category!"));
@@ -115,7 +115,7 @@ public class CommandState extends FCCommandBase {
                         .collect(GuavaCollectors.toImmutableList());
             }
         } else if (parse.current.type.equals(AdvCmdParser.CurrentElement.ElementType.FINAL)) {
-            Optional<IStateField> optField = FCStateManager.instance().getStateMap().get(source).getOrCreateFromAlias(parse.args[0]);
+            Optional<IStateField> optField = FCStateManager.instance().getState(source).getOrCreateFromAlias(parse.args[0]);
             if (!optField.isPresent()) return ImmutableList.of();
             IStateField field = optField.get();
             return field.modifySuggestions(source, parse.current.token, targetPosition).stream()
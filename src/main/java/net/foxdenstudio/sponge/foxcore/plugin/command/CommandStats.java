@@ -0,0 +1,107 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command;
+
+import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.Counter;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.LatencyHistogram;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+public class CommandStats extends FCCommandBase {
+
+    @Override
+    public CommandResult process(CommandSource source, String arguments) throws CommandException {
+        if (!testPermission(source)) {
+            source.sendMessage(Text.of(TextColors.RED, "You don't have permission to use this command!"));
+            return CommandResult.empty();
+        }
+        AdvCmdParser.ParseResult parse = AdvCmdParser.builder().arguments(arguments).parse();
+        String filter = parse.args.length > 0 ? parse.args[0].toLowerCase() : "";
+        FCMetrics metrics = FCMetrics.getInstance();
+        Text.Builder builder = Text.builder();
+        builder.append(Text.of(TextColors.GREEN, "------------------- FoxCore Stats -------------------"));
+        int shown = 0;
+        for (Map.Entry<String, Counter> entry : metrics.getCounters().entrySet()) {
+            if (!entry.getKey().toLowerCase().startsWith(filter)) continue;
+            builder.append(Text.NEW_LINE, Text.of(TextColors.GOLD, entry.getKey() + ": "), Text.of(entry.getValue().get()));
+            shown++;
+        }
+        for (Map.Entry<String, LongSupplier> entry : metrics.getGauges().entrySet()) {
+            if (!entry.getKey().toLowerCase().startsWith(filter)) continue;
+            builder.append(Text.NEW_LINE, Text.of(TextColors.GOLD, entry.getKey() + ": "), Text.of(entry.getValue().getAsLong()));
+            shown++;
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getHistograms().entrySet()) {
+            if (!entry.getKey().toLowerCase().startsWith(filter)) continue;
+            builder.append(Text.NEW_LINE, Text.of(TextColors.GOLD, entry.getKey() + ": "), Text.of(FCMetrics.formatHistogram(entry.getValue())));
+            shown++;
+        }
+        if (shown == 0) builder.append(Text.NEW_LINE, Text.of(TextColors.RED, "No metrics match \"" + filter + "\"!"));
+        source.sendMessage(builder.build());
+        return CommandResult.empty();
+    }
+
+    @Override
+    public List<String> getSuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws CommandException {
+        return ImmutableList.of();
+    }
+
+    @Override
+    public boolean testPermission(CommandSource source) {
+        return source.hasPermission("foxcore.command.debug.stats");
+    }
+
+    @Override
+    public Optional<Text> getShortDescription(CommandSource source) {
+        return Optional.of(Text.of("Shows performance counters and timings."));
+    }
+
+    @Override
+    public Optional<Text> getHelp(CommandSource source) {
+        return Optional.of(Text.of("Shows FoxCore's counters, gauges and timings. Timings are given as the median (p50), " +
+                "the 99th percentile (p99) and the maximum since the server started.\n" +
+                "An optional prefix only shows metrics whose names start with it, for example \"stats network\"."));
+    }
+
+    @Override
+    public Text getUsage(CommandSource source) {
+        return Text.of("stats [prefix]");
+    }
+}
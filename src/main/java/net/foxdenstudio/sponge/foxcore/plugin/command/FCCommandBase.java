@@ -18,6 +18,16 @@ import java.util.Optional;
  * Created by Fox on 7/17/2016.
  */
 public abstract class FCCommandBase implements CommandCallable {
+
+    /**
+     * Whether {@link FCCommandDispatcher} should run this command on {@link FCCommandExecutor}'s worker threads
+     * instead of the main thread. Async commands must hand world and player changes back with
+     * {@link FCCommandExecutor#sync(java.util.concurrent.Callable)}.
+     */
+    public boolean isAsync() {
+        return false;
+    }
+
     @Override
     public CommandResult process(CommandSource source, String arguments) throws CommandException {
         return CommandResult.empty();
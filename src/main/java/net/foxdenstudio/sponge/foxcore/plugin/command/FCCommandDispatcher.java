@@ -26,7 +26,11 @@
 package net.foxdenstudio.sponge.foxcore.plugin.command;
 
 import com.google.common.collect.*;
+import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParseCache;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
+import net.foxdenstudio.sponge.foxcore.plugin.command.util.AliasTrie;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.LatencyHistogram;
 import org.spongepowered.api.command.*;
 import org.spongepowered.api.command.dispatcher.Disambiguator;
 import org.spongepowered.api.command.dispatcher.Dispatcher;
@@ -41,6 +45,8 @@ import org.spongepowered.api.world.World;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -48,8 +54,18 @@ import static org.spongepowered.api.command.CommandMessageFormatting.SPACE_TEXT;
 
 public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
 
+    /**
+     * How long a source's permitted commands are remembered.
+     * There is no event for permission changes, so this bounds how stale a cached entry can get.
+     */
+    private static final long PERMISSION_CACHE_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
     protected final Disambiguator disambiguator;
     protected final ListMultimap<String, CommandMapping> commands = ArrayListMultimap.create();
+    protected final AliasTrie<CommandMapping> primaryAliases = new AliasTrie<>();
+    // Weak keys so disconnected players are dropped along with their source object.
+    private final Map<CommandSource, PermittedMappings> permissionCache = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<CommandMapping, LatencyHistogram> timings = new ConcurrentHashMap<>();
     protected String dispatcherPrefix;
     protected Text shortDescription;
 
@@ -89,6 +105,8 @@ public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
             for (String alias : aliases) {
                 this.commands.put(alias.toLowerCase(), mapping);
             }
+            this.primaryAliases.put(primary, mapping);
+            invalidatePermissionCache();
 
             return Optional.of(mapping);
         } else {
@@ -110,6 +128,8 @@ public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
             for (String alias : secondaryAliases) {
                 this.commands.put(alias.toLowerCase(), mapping);
             }
+            this.primaryAliases.put(primaryAlias, mapping);
+            invalidatePermissionCache();
 
             return Optional.of(mapping);
         } else {
@@ -231,19 +251,30 @@ public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
 
                 final String arguments = args.length > 1 ? args[1] : "";
                 final CommandCallable command = cmdOptional.get().getCallable();
+                final LatencyHistogram timing = getTiming(cmdOptional.get());
+                final long start = System.nanoTime();
+                if (command instanceof FCCommandBase && ((FCCommandBase) command).isAsync()) {
+                    try {
+                        AsyncCommandResult result = FCCommandExecutor.getInstance().submit(source, args[0],
+                                () -> command.process(source, arguments),
+                                e -> reportCommandError(source, args[0], command, e));
+                        result.getFuture().whenComplete((r, t) -> timing.recordSince(start));
+                        return result;
+                    } catch (CommandException e) {
+                        source.sendMessage(e.getText().toBuilder().color(TextColors.RED).build());
+                        return CommandResult.empty();
+                    }
+                }
                 try {
                     return command.process(source, arguments);
                 } catch (CommandNotFoundException e) {
                     throw new CommandException(Text.of("No such child command: %s" + e.getCommand
                             ()));
                 } catch (CommandException e) {
-                    Text text = e.getText();
-                    if (text == null)
-                        text = Text.of("There was an error processing command: " + args[0]);
-                    source.sendMessage(text.toBuilder().color(TextColors.RED).build());
-                    source.sendMessage(Text.of("Usage: " + dispatcherPrefix + " ").toBuilder()
-                            .append(command.getUsage(source)).color(TextColors.RED).build());
+                    reportCommandError(source, args[0], command, e);
                     return CommandResult.empty();
+                } finally {
+                    timing.recordSince(start);
                 }
             }
         } else {
@@ -255,9 +286,19 @@ public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
         }
     }
 
+    /**
+     * Parsers below this call, including those of child commands, share the source's {@link AdvCmdParseCache}.
+     */
     @Override
     public List<String> getSuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws
             CommandException {
+        try (AdvCmdParseCache.Scope ignored = AdvCmdParseCache.forSource(source).activate()) {
+            return getSuggestionsCached(source, arguments, targetPosition);
+        }
+    }
+
+    private List<String> getSuggestionsCached(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws
+            CommandException {
         AdvCmdParser.ParseResult parse = AdvCmdParser.builder()
                 .arguments(arguments)
                 .limit(1)
@@ -267,23 +308,18 @@ public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
                 .parse();
         if (parse.current.type == AdvCmdParser.CurrentElement.ElementType.ARGUMENT) {
             if (parse.current.index == 0) {
-                List<String> potentialCommands = filterCommandMappings(source).stream()
-                        .map(CommandMapping::getPrimaryAlias)
-                        .collect(Collectors.toList());
-                potentialCommands.add("help");
-                return potentialCommands.stream()
-                        .filter(new StartsWithPredicate(parse.current.token))
-                        .map(args -> parse.current.prefix + args)
-                        .collect(GuavaCollectors.toImmutableList());
+                ImmutableList.Builder<String> builder = ImmutableList.builder();
+                addPermittedAliases(source, parse.current.token, parse.current.prefix, builder);
+                if (new StartsWithPredicate(parse.current.token).test("help"))
+                    builder.add(parse.current.prefix + "help");
+                return builder.build();
             } else return ImmutableList.of();
         } else if (parse.current.type == AdvCmdParser.CurrentElement.ElementType.FINAL) {
             String commandString = parse.args[0];
             if (commandString.equals("help")) {
-                return filterCommandMappings(source).stream()
-                        .map(CommandMapping::getPrimaryAlias)
-                        .filter(new StartsWithPredicate(parse.current.token))
-                        .map(args -> parse.current.prefix + args)
-                        .collect(GuavaCollectors.toImmutableList());
+                ImmutableList.Builder<String> builder = ImmutableList.builder();
+                addPermittedAliases(source, parse.current.token, parse.current.prefix, builder);
+                return builder.build();
             } else {
                 Optional<CommandMapping> cmdOptional = get(parse.args[0], source);
                 if (!cmdOptional.isPresent()) {
@@ -299,25 +335,75 @@ public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
         } else return ImmutableList.of();
     }
 
-    private Set<String> filterCommands(final CommandSource src) {
-        return Multimaps.filterValues(this.commands, input -> input.getCallable().testPermission
-                (src)).keys().elementSet();
+    private void reportCommandError(CommandSource source, String alias, CommandCallable command, CommandException e) {
+        Text text = e.getText();
+        if (text == null)
+            text = Text.of("There was an error processing command: " + alias);
+        source.sendMessage(text.toBuilder().color(TextColors.RED).build());
+        source.sendMessage(Text.of("Usage: " + dispatcherPrefix + " ").toBuilder()
+                .append(command.getUsage(source)).color(TextColors.RED).build());
     }
 
-    private Set<CommandMapping> filterCommandMappings(final CommandSource src) {
-        return new HashSet<>(
-                Multimaps.filterValues(this.commands, input -> input.getCallable().testPermission
-                        (src)).values());
+    /**
+     * Gets the histogram of how long a child command takes, named after the command's full path.
+     */
+    private LatencyHistogram getTiming(CommandMapping mapping) {
+        return this.timings.computeIfAbsent(mapping, key -> FCMetrics.getInstance().histogram(
+                "command" + this.dispatcherPrefix.replace('/', '.').replace(' ', '.') + "." + key.getPrimaryAlias()));
     }
 
-    @Override
-    public boolean testPermission(CommandSource source) {
+    private void addPermittedAliases(CommandSource source, String token, String prefix, ImmutableList.Builder<String> builder) {
+        Set<CommandMapping> permitted = getPermittedMappings(source);
+        for (CommandMapping mapping : this.primaryAliases.collect(token, new ArrayList<>())) {
+            if (permitted.contains(mapping)) builder.add(prefix + mapping.getPrimaryAlias());
+        }
+    }
+
+    /**
+     * Gets the mappings the source has permission to use, in registration order.
+     * Results are cached per source, see {@link #invalidatePermissionCache(CommandSource)}.
+     */
+    protected Set<CommandMapping> getPermittedMappings(CommandSource source) {
+        final long now = System.currentTimeMillis();
+        PermittedMappings cached = this.permissionCache.get(source);
+        if (cached != null && now - cached.time < PERMISSION_CACHE_TIMEOUT) return cached.mappings;
+
+        Set<CommandMapping> mappings = new LinkedHashSet<>();
         for (CommandMapping mapping : this.commands.values()) {
-            if (mapping.getCallable().testPermission(source)) {
-                return true;
+            if (!mappings.contains(mapping) && mapping.getCallable().testPermission(source)) {
+                mappings.add(mapping);
             }
         }
-        return false;
+        mappings = Collections.unmodifiableSet(mappings);
+        this.permissionCache.put(source, new PermittedMappings(mappings, now));
+        return mappings;
+    }
+
+    /**
+     * Forgets the cached permissions of a source, in this dispatcher and any dispatchers registered under it.
+     * Call this after changing a source's permissions if the change needs to show up immediately.
+     */
+    public void invalidatePermissionCache(CommandSource source) {
+        this.permissionCache.remove(source);
+        for (CommandMapping mapping : this.commands.values()) {
+            if (mapping.getCallable() instanceof FCCommandDispatcher) {
+                ((FCCommandDispatcher) mapping.getCallable()).invalidatePermissionCache(source);
+            }
+        }
+    }
+
+    public void invalidatePermissionCache() {
+        this.permissionCache.clear();
+        for (CommandMapping mapping : this.commands.values()) {
+            if (mapping.getCallable() instanceof FCCommandDispatcher) {
+                ((FCCommandDispatcher) mapping.getCallable()).invalidatePermissionCache();
+            }
+        }
+    }
+
+    @Override
+    public boolean testPermission(CommandSource source) {
+        return !getPermittedMappings(source).isEmpty();
     }
 
     @Override
@@ -331,7 +417,7 @@ public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
             return Optional.empty();
         }
         Text.Builder build = Text.of(TextColors.GREEN, "Available commands:\n").toBuilder();
-        for (Iterator<CommandMapping> it = filterCommandMappings(source).iterator(); it.hasNext()
+        for (Iterator<CommandMapping> it = getPermittedMappings(source).iterator(); it.hasNext()
                 ; ) {
 
             CommandMapping mapping = it.next();
@@ -353,15 +439,15 @@ public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
     @Override
     public Text getUsage(CommandSource source) {
         final Text.Builder build = Text.builder();
-        List<String> commands = filterCommands(source).stream()
-                .filter(input -> {
-                    if (input == null) {
-                        return false;
-                    }
-                    final Optional<CommandMapping> ret = get(input, source);
-                    return ret.isPresent() && ret.get().getPrimaryAlias().equals(input);
-                })
-                .collect(Collectors.toList());
+        Set<String> commands = new LinkedHashSet<>();
+        for (CommandMapping mapping : getPermittedMappings(source)) {
+            for (String alias : mapping.getAllAliases()) {
+                String input = alias.toLowerCase();
+                if (commands.contains(input)) continue;
+                final Optional<CommandMapping> ret = get(input, source);
+                if (ret.isPresent() && ret.get().getPrimaryAlias().equals(input)) commands.add(input);
+            }
+        }
 
         for (Iterator<String> it = commands.iterator(); it.hasNext(); ) {
             build.append(Text.of(it.next()));
@@ -372,6 +458,16 @@ public class FCCommandDispatcher extends FCCommandBase implements Dispatcher {
         return build.build();
     }
 
+    private static class PermittedMappings {
+        private final Set<CommandMapping> mappings;
+        private final long time;
+
+        private PermittedMappings(Set<CommandMapping> mappings, long time) {
+            this.mappings = mappings;
+            this.time = time;
+        }
+    }
+
     protected class CommandHelp extends FCCommandBase {
 
         @Override
@@ -0,0 +1,252 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command;
+
+import net.foxdenstudio.sponge.foxcore.plugin.FCConfigManager;
+import net.foxdenstudio.sponge.foxcore.plugin.FoxCoreMain;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
+import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs commands that {@link FCCommandBase#isAsync() opted in} on a small, bounded pool of worker threads.
+ * <p>
+ * Each source can have one async command running at a time. Commands are interrupted when they are
+ * {@link #cancel(CommandSource) cancelled} or run past the configured timeout, so long loops should call
+ * {@link #checkCancelled()}. Anything that touches the world or players has to go through {@link #sync(Callable)},
+ * including the messages this class sends.
+ */
+public final class FCCommandExecutor {
+
+    private static final FCCommandExecutor instance = new FCCommandExecutor();
+
+    // Keyed by FCPUtil.getSourceKey, so a player who respawned still finds the command they started.
+    private final ConcurrentMap<Object, RunningCommand> running = new ConcurrentHashMap<>();
+    private final LongSupplier timeoutMillis;
+    private ExecutorService pool;
+    private ScheduledExecutorService timer;
+    private ExecutorService mainThread;
+
+    private FCCommandExecutor() {
+        this.timeoutMillis = () -> TimeUnit.SECONDS.toMillis(FCConfigManager.getInstance().getAsyncCommandTimeout());
+        FCMetrics.getInstance().gauge("command.async.running", this::getRunningCount);
+    }
+
+    /**
+     * Runs on the given executors instead of ones made from the config and the Sponge scheduler.
+     *
+     * @param mainThread stands in for the server thread, for messages to sources.
+     * @param timeoutMillis how long commands may run, or 0 for no limit.
+     */
+    FCCommandExecutor(ExecutorService pool, ScheduledExecutorService timer, ExecutorService mainThread, long timeoutMillis) {
+        this.pool = pool;
+        this.timer = timer;
+        this.mainThread = mainThread;
+        this.timeoutMillis = () -> timeoutMillis;
+    }
+
+    public static FCCommandExecutor getInstance() {
+        return instance;
+    }
+
+    /**
+     * Queues a command body on the worker pool.
+     *
+     * @param errorHandler reports a {@link CommandException} thrown by the body to the source. It is run on the main thread.
+     * @throws CommandException if the source already has a command running, or the pool is full.
+     */
+    public AsyncCommandResult submit(CommandSource source, String name, Callable<CommandResult> body,
+                                     Consumer<CommandException> errorHandler) throws CommandException {
+        CompletableFuture<CommandResult> result = new CompletableFuture<>();
+        RunningCommand command = new RunningCommand(source, name, result);
+        if (this.running.putIfAbsent(command.key, command) != null) {
+            throw new CommandException(Text.of("You already have a command running! Use \"/foxcore cancel\" to stop it."));
+        }
+        long timeout = this.timeoutMillis.getAsLong();
+        if (timeout > 0) {
+            command.timeoutTask = timer().schedule(() -> command.cancel("timed out"), timeout, TimeUnit.MILLISECONDS);
+        }
+        try {
+            command.future = pool().submit(() -> {
+                try {
+                    // Cancelled while still queued, possibly before the future was set to be interrupted.
+                    if (result.isCancelled()) return;
+                    result.complete(body.call());
+                } catch (CommandException e) {
+                    if (!result.isDone()) mainThread().execute(() -> errorHandler.accept(e));
+                    result.complete(CommandResult.empty());
+                } catch (Exception e) {
+                    if (!result.isDone()) {
+                        FoxCoreMain.instance().logger().error("Error running command \"" + name + "\" for " + source.getName(), e);
+                        tell(source, Text.of(TextColors.RED, "An error occurred while running this command!"));
+                    }
+                    result.completeExceptionally(e);
+                } finally {
+                    command.finish();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            command.finish();
+            throw new CommandException(Text.of("The server is busy running other commands. Try again in a moment!"));
+        }
+        // A cancel that ran before the future was set couldn't interrupt it.
+        if (result.isCancelled()) command.future.cancel(true);
+        return new AsyncCommandResult(result);
+    }
+
+    /**
+     * Cancels the async command the source is running, if there is one.
+     *
+     * @return the name of the cancelled command.
+     */
+    public Optional<String> cancel(CommandSource source) {
+        RunningCommand command = this.running.get(FCPUtil.getSourceKey(source));
+        if (command == null || !command.cancel("cancelled")) return Optional.empty();
+        return Optional.of(command.name);
+    }
+
+    public int getRunningCount() {
+        return this.running.size();
+    }
+
+    /**
+     * Runs a task on the main thread and waits for it. Runs it directly if this already is the main thread.
+     *
+     * @throws CommandException if the task throws, or the command is cancelled while waiting.
+     */
+    public static <T> T sync(Callable<T> task) throws CommandException {
+        if (Sponge.getServer().isMainThread()) {
+            try {
+                return task.call();
+            } catch (CommandException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CommandException(Text.of("Error running command on the main thread!"), e);
+            }
+        }
+        Future<T> future = instance.mainThread().submit(task);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new CommandException(Text.of("Command was cancelled!"));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CommandException) throw (CommandException) e.getCause();
+            throw new CommandException(Text.of("Error running command on the main thread!"), e.getCause());
+        }
+    }
+
+    /**
+     * Stops the current async command if it has been cancelled or has timed out.
+     */
+    public static void checkCancelled() throws CommandException {
+        if (Thread.currentThread().isInterrupted()) throw new CommandException(Text.of("Command was cancelled!"));
+    }
+
+    // Workers and the timeout timer must not touch the source themselves.
+    private void tell(CommandSource source, Text message) {
+        mainThread().execute(() -> source.sendMessage(message));
+    }
+
+    private synchronized ExecutorService pool() {
+        if (this.pool == null) {
+            FCConfigManager config = FCConfigManager.getInstance();
+            AtomicInteger threadCount = new AtomicInteger();
+            this.pool = new ThreadPoolExecutor(config.getAsyncCommandThreads(), config.getAsyncCommandThreads(),
+                    0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(config.getAsyncCommandQueueSize()),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "FoxCore Command Worker #" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return this.pool;
+    }
+
+    private synchronized ScheduledExecutorService timer() {
+        if (this.timer == null) this.timer = Sponge.getScheduler().createAsyncExecutor(FoxCoreMain.instance());
+        return this.timer;
+    }
+
+    private synchronized ExecutorService mainThread() {
+        if (this.mainThread == null) this.mainThread = Sponge.getScheduler().createSyncExecutor(FoxCoreMain.instance());
+        return this.mainThread;
+    }
+
+    private final class RunningCommand {
+        private final CommandSource source;
+        private final Object key;
+        private final String name;
+        private final CompletableFuture<CommandResult> result;
+        private volatile Future<?> future;
+        private volatile Future<?> timeoutTask;
+
+        private RunningCommand(CommandSource source, String name, CompletableFuture<CommandResult> result) {
+            this.source = source;
+            this.key = FCPUtil.getSourceKey(source);
+            this.name = name;
+            this.result = result;
+        }
+
+        private boolean cancel(String reason) {
+            if (!this.result.cancel(false)) return false;
+            if (this.future != null) this.future.cancel(true);
+            finish();
+            tell(this.source, Text.of(TextColors.RED, "Command \"" + this.name + "\" " + reason + "!"));
+            return true;
+        }
+
+        private void finish() {
+            running.remove(this.key, this);
+            Future<?> timeoutTask = this.timeoutTask;
+            if (timeoutTask != null) timeoutTask.cancel(false);
+        }
+    }
+}
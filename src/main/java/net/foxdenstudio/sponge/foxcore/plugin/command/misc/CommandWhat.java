@@ -2,6 +2,7 @@ package net.foxdenstudio.sponge.foxcore.plugin.command.misc;
 
 import com.google.common.collect.ImmutableList;
 import net.foxdenstudio.sponge.foxcore.plugin.command.FCCommandBase;
+import net.foxdenstudio.sponge.foxcore.plugin.command.FCCommandExecutor;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.*;
@@ -26,53 +27,61 @@ public class CommandWhat extends FCCommandBase {
         AdvCmdParser.ParseResult parse = AdvCmdParser.builder()
                 .arguments(arguments)
                 .parse();
-        CommandManager manager = Sponge.getCommandManager();
+        // Command mappings and the source belong to the main thread.
+        return FCCommandExecutor.sync(() -> {
+            CommandManager manager = Sponge.getCommandManager();
 
-        if (parse.args.length == 0) {
-            source.sendMessage(Text.of(TextColors.GREEN, "Usage: ", TextColors.RESET, "/foxcore misc what <command>"));
-        } else {
-            String commandName = parse.args[0];
-            Set<? extends CommandMapping> mappings = manager.getAll(commandName);
-            if (mappings.size() > 0) {
-                Text.Builder builder = Text.builder();
-                builder.append(Text.of(TextColors.GOLD, "\n-----------------------------------------------------\n"));
-                if (mappings.size() == 1) {
-                    CommandMapping mapping = mappings.iterator().next();
+            if (parse.args.length == 0) {
+                source.sendMessage(Text.of(TextColors.GREEN, "Usage: ", TextColors.RESET, "/foxcore misc what <command>"));
+            } else {
+                String commandName = parse.args[0];
+                Set<? extends CommandMapping> mappings = manager.getAll(commandName);
+                if (mappings.size() > 0) {
+                    Text.Builder builder = Text.builder();
+                    builder.append(Text.of(TextColors.GOLD, "\n-----------------------------------------------------\n"));
+                    if (mappings.size() == 1) {
+                        CommandMapping mapping = mappings.iterator().next();
 
-                    generateText(mapping, builder, source, manager);
+                        generateText(mapping, builder, source, manager);
 
-                    source.sendMessage(builder.build());
-                } else {
-                    Optional<? extends CommandMapping> primaryMappingOpt = manager.get(commandName);
-                    Set<? extends CommandMapping> secondaryMappings = new HashSet<>(mappings);
-                    if (primaryMappingOpt.isPresent()) {
-                        CommandMapping primaryMapping = primaryMappingOpt.get();
-                        secondaryMappings.remove(primaryMapping);
+                        source.sendMessage(builder.build());
+                    } else {
+                        Optional<? extends CommandMapping> primaryMappingOpt = manager.get(commandName);
+                        Set<? extends CommandMapping> secondaryMappings = new HashSet<>(mappings);
+                        if (primaryMappingOpt.isPresent()) {
+                            CommandMapping primaryMapping = primaryMappingOpt.get();
+                            secondaryMappings.remove(primaryMapping);
 
-                        builder.append(Text.of(TextColors.GREEN, "------- Primary -------\n"));
+                            builder.append(Text.of(TextColors.GREEN, "------- Primary -------\n"));
 
-                        generateText(primaryMapping, builder, source, manager);
+                            generateText(primaryMapping, builder, source, manager);
 
-                        builder.append(Text.of(TextColors.GREEN, "\n------- Secondary -------\n"));
+                            builder.append(Text.of(TextColors.GREEN, "\n------- Secondary -------\n"));
 
-                        Iterator<? extends CommandMapping> mappingIterator = secondaryMappings.iterator();
+                            Iterator<? extends CommandMapping> mappingIterator = secondaryMappings.iterator();
 
-                        while (mappingIterator.hasNext()) {
-                            CommandMapping mapping = mappingIterator.next();
-                            generateText(mapping, builder, source, manager);
-                            if (mappingIterator.hasNext()) {
-                                builder.append(Text.of("\n\n"));
+                            while (mappingIterator.hasNext()) {
+                                CommandMapping mapping = mappingIterator.next();
+                                generateText(mapping, builder, source, manager);
+                                if (mappingIterator.hasNext()) {
+                                    builder.append(Text.of("\n\n"));
+                                }
                             }
+                        } else {
+                            source.sendMessage(Text.of(TextColors.RED, "Something very strange happened. What the heck did you do?"));
                         }
-                    } else {
-                        source.sendMessage(Text.of(TextColors.RED, "Something very strange happened. What the heck did you do?"));
                     }
+                } else {
+                    source.sendMessage(Text.of(TextColors.RED, "No command with this name: ", TextColors.RESET, commandName));
                 }
-            } else {
-                source.sendMessage(Text.of(TextColors.RED, "No command with this name: ", TextColors.RESET, commandName));
             }
-        }
-        return CommandResult.empty();
+            return CommandResult.empty();
+        });
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
     }
 
     @Override
@@ -0,0 +1,135 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command.util;
+
+import net.foxdenstudio.sponge.foxcore.common.util.LoadingCacheMap;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.Counter;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
+import org.spongepowered.api.command.CommandSource;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Remembers the last few tokenizations of a source's input, so tab completion doesn't rescan the whole line on every keystroke.
+ * <p>
+ * While a cache is {@link #activate() active} on a thread, every {@link AdvCmdParser} on that thread tokenizes through it.
+ * Input seen before is reused as is. Input that is the tail of an earlier one,
+ * like the arguments a dispatcher hands to a child command, reuses that input's token positions.
+ * Anything else only rescans from the first character that differs from the closest earlier input.
+ */
+public final class AdvCmdParseCache {
+
+    private static final int SIZE = 16;
+
+    private static final Map<CommandSource, AdvCmdParseCache> caches = LoadingCacheMap.builder()
+            .weakKeys()
+            .<CommandSource, AdvCmdParseCache>build(source -> new AdvCmdParseCache());
+    private static final ThreadLocal<AdvCmdParseCache> active = new ThreadLocal<>();
+
+    private static final Counter HITS = FCMetrics.getInstance().counter("command.parsecache.hits");
+    private static final Counter SUFFIXES = FCMetrics.getInstance().counter("command.parsecache.suffixes");
+    private static final Counter RESCANS = FCMetrics.getInstance().counter("command.parsecache.rescans");
+    private static final Counter MISSES = FCMetrics.getInstance().counter("command.parsecache.misses");
+
+    // Most recent tokenizations, used as a ring.
+    private final AdvCmdTokenizer[] entries = new AdvCmdTokenizer[SIZE];
+    private int next = 0;
+
+    private AdvCmdParseCache() {
+    }
+
+    public static AdvCmdParseCache forSource(CommandSource source) {
+        return caches.get(source);
+    }
+
+    @Nullable
+    static AdvCmdParseCache getActive() {
+        return active.get();
+    }
+
+    /**
+     * Makes parsers on this thread use this cache until the returned scope is closed.
+     * If a cache is already active, it stays active and closing the scope does nothing.
+     */
+    public Scope activate() {
+        if (active.get() != null) return () -> {
+        };
+        active.set(this);
+        return active::remove;
+    }
+
+    synchronized AdvCmdTokenizer tokenize(String input) {
+        AdvCmdTokenizer closest = null;
+        int closestPrefix = 0;
+        for (AdvCmdTokenizer entry : entries) {
+            if (entry == null) continue;
+            if (entry.getInput().equals(input)) {
+                HITS.increment();
+                return entry;
+            }
+            if (!entry.isReusable()) continue;
+            int prefix = commonPrefix(entry.getInput(), input);
+            if (prefix > closestPrefix) {
+                closest = entry;
+                closestPrefix = prefix;
+            }
+        }
+        AdvCmdTokenizer result = null;
+        for (AdvCmdTokenizer entry : entries) {
+            if (entry == null || entry.getInput().length() <= input.length()) continue;
+            result = AdvCmdTokenizer.tokenizeSuffix(entry, input);
+            if (result != null) {
+                SUFFIXES.increment();
+                break;
+            }
+        }
+        if (result == null) {
+            if (closest != null) {
+                result = AdvCmdTokenizer.tokenizeFrom(closest, input);
+                RESCANS.increment();
+            } else {
+                result = AdvCmdTokenizer.tokenize(input);
+                MISSES.increment();
+            }
+        }
+        entries[next] = result;
+        next = (next + 1) % SIZE;
+        return result;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        final int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
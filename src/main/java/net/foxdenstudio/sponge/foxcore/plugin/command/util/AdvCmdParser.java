@@ -25,17 +25,17 @@
 
 package net.foxdenstudio.sponge.foxcore.plugin.command.util;
 
-import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.LatencyHistogram;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.text.Text;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Created by Fox on 12/1/2015.
@@ -43,12 +43,13 @@ import java.util.regex.Pattern;
  */
 public final class AdvCmdParser {
 
+    private static final LatencyHistogram PARSE_TIME = FCMetrics.getInstance().histogram("command.parse");
+
     public static final FlagMapper DEFAULT_MAPPER = map -> key -> value -> {
         map.put(key, value);
         return true;
     };
 
-    private static final String regex = "(?:--[\\w-]*[:=])?([\"'])(?:\\\\.|[^\\\\])*?\\1|(?:\\\\.|[^\"'\\s])+";
     // Holds the raw input to be parsed
     private String arguments = "";
     // Designates how many separate arguments to parse. Flags do not count toward this number
@@ -127,48 +128,48 @@ public final class AdvCmdParser {
     }
 
     public ParseResult parse() throws CommandException {
+        final long start = System.nanoTime();
+        try {
+            return parseArguments();
+        } finally {
+            PARSE_TIME.recordSince(start);
+        }
+    }
+
+    private ParseResult parseArguments() throws CommandException {
         ParseResult parseResult = new ParseResult();
         boolean inQuote = false;
         String arguments = this.arguments;
 
-        // Regex Pattern for identifying arguments and flags. It respects quotation marks and escape characters.
-        Pattern pattern = Pattern.compile(regex);
+        // Splits the input into arguments and flags. It respects quotation marks and escape characters.
+        AdvCmdTokenizer tokens = tokenize(arguments);
         // Check for unclosed quotes
-        {
-            String toStrip = arguments;
-            while (true) {
-                Matcher tempMatcher = pattern.matcher(toStrip);
-                if (!tempMatcher.find()) break;
-                toStrip = toStrip.substring(0, tempMatcher.start()) + toStrip.substring(tempMatcher.end());
-            }
-            Pattern pattern2 = Pattern.compile("[\"']");
-            Matcher matcher = pattern2.matcher(toStrip);
-            if (matcher.find()) {
-                if (autoCloseQuotes) {
-                    if (matcher.group().equals("\"")) arguments += "\"";
-                    else if (matcher.group().equals("'")) arguments += "'";
-                    inQuote = true;
-                } else {
-                    throw new CommandException(Text.of("You must close all quotes!"));
-                }
+        char unclosedQuote = tokens.getUnclosedQuote();
+        if (unclosedQuote != 0) {
+            if (autoCloseQuotes) {
+                arguments += unclosedQuote;
+                inQuote = true;
+                // Closing the quote can change how everything after it is split, so the input is scanned again.
+                tokens = tokenize(arguments);
+            } else {
+                throw new CommandException(Text.of("You must close all quotes!"));
             }
         }
 
         // List of string arguments that were not parsed as flags
         List<String> argsList = new ArrayList<>();
-        // Matcher for identifying arguments and flags.
-        Matcher matcher = pattern.matcher(arguments);
-        boolean lastIsCurrent = !arguments.isEmpty() && (inQuote || !arguments.substring(arguments.length() - 1).matches("[\"' ]"));
+        boolean lastIsCurrent = !arguments.isEmpty() && (inQuote || !isQuoteOrSpace(arguments.charAt(arguments.length() - 1)));
         // Whether or not the jump key was used.
         boolean jump = false;
         // Stores flags that were not accepted by the mapper, to be given to the final block, if it exists.
         List<String> extraFlags = new ArrayList<>();
         String finalBlock = "";
-        // Iterate through matches
-        while (matcher.find()) {
+        // Iterate through tokens
+        for (int t = 0; t < tokens.count(); t++) {
 
-            final String result = matcher.group();
-            boolean include = !(excludeCurrent && lastIsCurrent && matcher.end() == arguments.length());
+            final int start = tokens.start(t);
+            final String result = tokens.token(t);
+            boolean include = !(excludeCurrent && lastIsCurrent && tokens.end(t) == arguments.length());
             // Makes "---" mark the end of the command. Effectively allows command comments
             // It also means that flag names cannot start with hyphens
             if (!result.startsWith("---")) {
@@ -178,28 +179,29 @@ public final class AdvCmdParser {
                 // Setting extractSubFlags to true forces flags within the final string to be left as-is
                 // This is useful if the final string is it's own command and needs to be re-parsed
                 if (result.startsWith("--") && (extractSubFlags || limit <= 0 || argsList.size() < limit || (parseLastFlags && argsList.size() <= limit && !jump))) {
-                    if (result.equals("--")) {
+                    if (result.length() == 2) {
                         parseResult.current = new CurrentElement(CurrentElement.ElementType.LONGFLAGKEY, "", 0, "");
                         continue;
                     }
 
-                    // Trims the prefix
-                    String trimmedResult = result.substring(2);
-                    // Splits once by ":" or "="
-                    String[] parts = trimmedResult.split("[:=]", 2);
+                    // Splits once by ":" or "=", ignoring the prefix
+                    int separator = indexOfSeparator(result, 2);
+                    String key = separator < 0 ? result.substring(2) : result.substring(2, separator);
                     // Throw an exception if the key contains a quote character, as that shouldn't be allowed
-                    if (parts[0].matches("^.*[^\\w-].*$"))
-                        throw new CommandException(Text.of("Long flag keys must be alphanumeric (Includes underscores and hyphens)!"));
-                    if (parts[0].isEmpty())
+                    for (int i = 0; i < key.length(); i++) {
+                        if (!AdvCmdTokenizer.isWordOrHyphen(key.charAt(i)))
+                            throw new CommandException(Text.of("Long flag keys must be alphanumeric (Includes underscores and hyphens)!"));
+                    }
+                    if (key.isEmpty())
                         throw new CommandException(Text.of("Long flag keys cannot be empty!"));
                     // Default value in case a value isn't specified
                     String value = "";
                     // Retrieves value if it exists
-                    if (parts.length > 1) {
-                        value = unescapeString(parts[1]);
-                        parseResult.current = new CurrentElement(CurrentElement.ElementType.LONGFLAGVALUE, value, 0, parts[0]);
+                    if (separator >= 0) {
+                        value = unescapeString(result.substring(separator + 1));
+                        parseResult.current = new CurrentElement(CurrentElement.ElementType.LONGFLAGVALUE, value, 0, key);
                     } else {
-                        parseResult.current = new CurrentElement(CurrentElement.ElementType.LONGFLAGKEY, parts[0], 0, "");
+                        parseResult.current = new CurrentElement(CurrentElement.ElementType.LONGFLAGKEY, key, 0, "");
                     }
                     if (include) {
                         // Applies the flagMapper function.
@@ -208,27 +210,27 @@ public final class AdvCmdParser {
                         // I put "accepted" in quotes because the function might have actually accepted the flag, but returned false anyway.
                         // This will cause the flag to be duplicated into the final block, which could actually still be intended behavior.
                         boolean success = flagMapper.apply(parseResult.flags)
-                                .apply(parts[0])
+                                .apply(key)
                                 .apply(value);
                         if (!success) extraFlags.add(result);
                     }
                     // Parses result as a short flag. Limit behavior is the same as long flags
                     // multiple letters are treated as multiple flags. Repeating letters add a second flag with a repetition
                     // Example: "-aab" becomes flags "a", "aa", and "b"
-                } else if (result.startsWith("-") && (result.length() < 2 || !result.substring(1, 2).matches("[0-9.]"))
+                } else if (result.startsWith("-") && (result.length() < 2 || !isDigitOrDot(result.charAt(1)))
                         && (extractSubFlags || limit <= 0 || argsList.size() < limit || (parseLastFlags && argsList.size() <= limit && !jump))) {
-                    if (result.equals("-")) {
+                    if (result.length() == 1) {
                         parseResult.current = new CurrentElement(CurrentElement.ElementType.SHORTFLAG, "", 0, "");
                         continue;
                     }
 
-                    // Trims prefix
-                    String trimmedResult = result.substring(1);
-                    // Iterates through each letter
-                    for (String str : trimmedResult.split("")) {
+                    // Iterates through each letter, skipping the prefix
+                    for (int i = 1; i < result.length(); i++) {
+                        char letter = result.charAt(i);
                         // Checks to make sure that the flag letter is alphabetic. Throw exception if it doesn't
-                        if (str.matches("[a-zA-Z]")) {
+                        if ((letter >= 'a' && letter <= 'z') || (letter >= 'A' && letter <= 'Z')) {
                             // Checks if the flag already exists, and repeat the letter until it doesn't
+                            String str = String.valueOf(letter);
                             String temp = str;
                             while (parseResult.flags.containsKey(temp)) {
                                 temp += str;
@@ -240,7 +242,7 @@ public final class AdvCmdParser {
                                         .apply("");
                                 if (!success) extraFlags.add(result);
                             }
-                        } else if (str.matches("[:=-]")) {
+                        } else if (letter == ':' || letter == '=' || letter == '-') {
                             throw new CommandException(Text.of("You may only have alphabetic short flags! Did you mean to use a long flag (two dashes)?"));
                         } else {
                             throw new CommandException(Text.of("You may only have alphabetic short flags!"));
@@ -257,7 +259,7 @@ public final class AdvCmdParser {
                     }
 
                     if (leaveFinalAsIs && limit > 0 && argsList.size() >= limit) {
-                        finalBlock = arguments.substring(matcher.start(), arguments.length() - (inQuote ? 1 : 0));
+                        finalBlock = arguments.substring(start, arguments.length() - (inQuote ? 1 : 0));
                         parseResult.current = new CurrentElement(CurrentElement.ElementType.FINAL, finalBlock, argsList.size(), "");
 
                         lastIsCurrent = true;
@@ -282,7 +284,7 @@ public final class AdvCmdParser {
                     }
                 }
             } else {
-                parseResult.current = new CurrentElement(CurrentElement.ElementType.COMMENT, arguments.substring(matcher.start() + 3), 0, "");
+                parseResult.current = new CurrentElement(CurrentElement.ElementType.COMMENT, arguments.substring(start + 3), 0, "");
                 break;
             }
         }
@@ -295,19 +297,22 @@ public final class AdvCmdParser {
         // A number of arguments are copied to a new list less than or equal to the limit.
         // The rest of the arguments, if any, are concatenated together.
         List<String> finalList = new ArrayList<>();
+        StringBuilder finalBuilder = new StringBuilder();
+        for (int i = extraFlags.size() - 1; i >= 0; i--) {
+            finalBuilder.append(extraFlags.get(i)).append(' ');
+        }
+        finalBuilder.append(finalBlock);
         for (int i = 0; i < argsList.size(); i++) {
             if (limit <= 0 || i < limit) {
                 finalList.add(argsList.get(i));
             } else {
-                finalBlock += argsList.get(i);
+                finalBuilder.append(argsList.get(i));
                 if (i + 1 < argsList.size()) {
-                    finalBlock += " ";
+                    finalBuilder.append(' ');
                 }
             }
         }
-        for (String flag : extraFlags) {
-            finalBlock = flag + " " + finalBlock;
-        }
+        finalBlock = finalBuilder.toString();
 
         if (parseResult.current != null && parseResult.current.type == CurrentElement.ElementType.ARGUMENT && limit > 0 && parseResult.current.index >= limit)
             parseResult.current = new CurrentElement(CurrentElement.ElementType.FINAL, finalBlock + (finalBlock.isEmpty() || lastIsCurrent ? "" : " "), finalList.size(), "");
@@ -324,43 +329,71 @@ public final class AdvCmdParser {
         if ((parseResult.current.type.equals(CurrentElement.ElementType.ARGUMENT) || parseResult.current.type.equals(CurrentElement.ElementType.FINAL))
                 && parseResult.current.index != 0
                 && parseResult.current.token.isEmpty()
-                && !this.arguments.substring(this.arguments.length() - 1).matches(" ")) {
+                && this.arguments.charAt(this.arguments.length() - 1) != ' ') {
             parseResult.current = new CurrentElement(CurrentElement.ElementType.COMPLETE, "", 0, "");
         }
         // Prefix
-        String[] mcArgs = this.arguments.split(" +", -1);
-        if (!parseResult.current.token.contains(" "))
+        if (parseResult.current.token.indexOf(' ') < 0) {
+            // Minecraft only completes the part of the input after the last space
+            String mcArg = this.arguments.substring(this.arguments.lastIndexOf(' ') + 1);
             parseResult.current = parseResult.current.withPrefix(
-                    mcArgs[mcArgs.length - 1].substring(0, mcArgs[mcArgs.length - 1].length() - parseResult.current.token.length()));
+                    mcArg.substring(0, mcArg.length() - parseResult.current.token.length()));
+        }
 
         return parseResult;
     }
 
+    private static AdvCmdTokenizer tokenize(String input) {
+        AdvCmdParseCache cache = AdvCmdParseCache.getActive();
+        return cache != null ? cache.tokenize(input) : AdvCmdTokenizer.tokenize(input);
+    }
+
+    private static boolean isQuoteOrSpace(char c) {
+        return c == '"' || c == '\'' || c == ' ';
+    }
+
+    private static boolean isDigitOrDot(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+
+    private static int indexOfSeparator(String str, int fromIndex) {
+        for (int i = fromIndex; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == ':' || c == '=') return i;
+        }
+        return -1;
+    }
+
     private String unescapeString(String str) {
         if (str.startsWith("\"") || str.startsWith("'")) str = str.substring(1, str.length() - 1);
-        String newStr = "";
+        if (str.indexOf('\\') < 0) return str;
+        StringBuilder builder = new StringBuilder(str.length());
         for (int i = 0; i < str.length(); i++) {
-            String letter = str.substring(i, i + 1);
-            if (letter.equals("\\")) {
-                if (i + 2 <= str.length()) {
-                    String escape = str.substring(i + 1, i + 2);
+            char letter = str.charAt(i);
+            if (letter == '\\') {
+                if (i + 1 < str.length()) {
+                    char escape = str.charAt(++i);
                     switch (escape) {
-                        case "n":
-                            escape = "\n";
+                        case 'n':
+                            escape = '\n';
                     }
-                    newStr += escape;
-                    i++;
+                    builder.append(escape);
                 }
             } else {
-                newStr += letter;
+                builder.append(letter);
             }
         }
-        return newStr;
+        return builder.toString();
     }
 
     public static final class ParseResult {
         public String[] args = {};
-        public Map<String, String> flags = new CacheMap<>((key, map) -> "");
+        public Map<String, String> flags = new HashMap<String, String>() {
+            @Override
+            public String get(Object key) {
+                return getOrDefault(key, "");
+            }
+        };
         public CurrentElement current = null;
 
         @Override
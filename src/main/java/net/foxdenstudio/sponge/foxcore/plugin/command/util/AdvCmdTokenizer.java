@@ -0,0 +1,274 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command.util;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Single pass tokenizer used by {@link AdvCmdParser}.
+ * <p>
+ * Splits the input into the same tokens as the old argument regex:
+ * <pre>(?:--[\w-]*[:=])?(["'])(?:\\.|[^\\])*?\1|(?:\\.|[^"'\s])+</pre>
+ * That is, a quoted string optionally prefixed by a long flag key, or a run of
+ * non-whitespace, non-quote characters where a backslash escapes the next character.
+ * <p>
+ * Only token offsets are stored, so tokenizing does not allocate any strings.
+ * Quote characters that could not be matched as part of any token are tracked as well,
+ * which is how unclosed quotes are detected.
+ */
+public final class AdvCmdTokenizer {
+
+    private final String input;
+    // Start and end offsets of each token, interleaved.
+    private int[] spans = new int[16];
+    private int count = 0;
+    // First quote character that was left over between tokens, or 0 if every quote was closed.
+    private char unclosedQuote = 0;
+    // Whether a backslash is directly followed by a line terminator somewhere in the input.
+    private boolean escapedLineTerminator = false;
+
+    private AdvCmdTokenizer(String input) {
+        this.input = input;
+    }
+
+    public static AdvCmdTokenizer tokenize(String input) {
+        AdvCmdTokenizer tokenizer = new AdvCmdTokenizer(input);
+        tokenizer.scan(0);
+        if (tokenizer.escapedLineTerminator) {
+            tokenizer.unclosedQuote = findUnclosedQuoteByStripping(input);
+        }
+        return tokenizer;
+    }
+
+    /**
+     * Tokenizes input that shares a prefix with an earlier input, such as the next keystroke of a tab completion.
+     * Only tokens that end inside the shared prefix are kept, and scanning resumes after the last of them.
+     * Falls back to a full scan if the earlier input can't be reused.
+     */
+    public static AdvCmdTokenizer tokenizeFrom(AdvCmdTokenizer previous, String input) {
+        if (!previous.isReusable()) return tokenize(input);
+        final String old = previous.input;
+        final int max = Math.min(old.length(), input.length());
+        int common = 0;
+        while (common < max && old.charAt(common) == input.charAt(common)) common++;
+        // A token can only have looked at its own characters and the one right after it,
+        // so tokens that end before the first changed character come out the same.
+        int kept = previous.count;
+        while (kept > 0 && previous.end(kept - 1) >= common) kept--;
+        AdvCmdTokenizer tokenizer = new AdvCmdTokenizer(input);
+        tokenizer.spans = Arrays.copyOf(previous.spans, Math.max(16, previous.spans.length));
+        tokenizer.count = kept;
+        tokenizer.scan(kept > 0 ? previous.end(kept - 1) : 0);
+        if (tokenizer.escapedLineTerminator) {
+            tokenizer.unclosedQuote = findUnclosedQuoteByStripping(input);
+        }
+        return tokenizer;
+    }
+
+    /**
+     * Takes the tokens of a trailing part of an earlier input, such as the arguments a dispatcher passes on to a child command.
+     *
+     * @return null if the earlier input can't be reused, or the suffix doesn't start at one of its tokens.
+     */
+    @Nullable
+    public static AdvCmdTokenizer tokenizeSuffix(AdvCmdTokenizer previous, String suffix) {
+        if (!previous.isReusable() || !previous.input.endsWith(suffix)) return null;
+        final int offset = previous.input.length() - suffix.length();
+        int first = 0;
+        while (first < previous.count && previous.start(first) < offset) first++;
+        if (first < previous.count ? previous.start(first) != offset : offset != previous.input.length()) return null;
+        AdvCmdTokenizer tokenizer = new AdvCmdTokenizer(suffix);
+        tokenizer.count = previous.count - first;
+        tokenizer.spans = new int[Math.max(16, tokenizer.count * 2)];
+        for (int i = 0; i < tokenizer.count * 2; i++) {
+            tokenizer.spans[i] = previous.spans[first * 2 + i] - offset;
+        }
+        return tokenizer;
+    }
+
+    /**
+     * Whether every token was scanned without looking past the character after it, so the tokens can be reused.
+     */
+    boolean isReusable() {
+        return unclosedQuote == 0 && !escapedLineTerminator;
+    }
+
+    /**
+     * The old quote check repeatedly removed the first token and rescanned the remaining string.
+     * Unless a backslash is followed by a line terminator, that leaves exactly the characters between tokens,
+     * so this slow version is only needed for that case.
+     */
+    private static char findUnclosedQuoteByStripping(String input) {
+        String toStrip = input;
+        while (true) {
+            AdvCmdTokenizer tokenizer = new AdvCmdTokenizer(toStrip);
+            tokenizer.scan(0);
+            if (tokenizer.count == 0) break;
+            toStrip = toStrip.substring(0, tokenizer.start(0)) + toStrip.substring(tokenizer.end(0));
+        }
+        for (int i = 0; i < toStrip.length(); i++) {
+            char c = toStrip.charAt(i);
+            if (c == '"' || c == '\'') return c;
+        }
+        return 0;
+    }
+
+    private void scan(int from) {
+        final int length = input.length();
+        int i = from;
+        while (i < length) {
+            char c = input.charAt(i);
+            if (isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int end = -1;
+            if (c == '-' || c == '"' || c == '\'') end = scanQuoted(i);
+            if (end < 0) {
+                if (c == '"' || c == '\'') {
+                    if (unclosedQuote == 0) unclosedQuote = c;
+                    i++;
+                    continue;
+                }
+                end = scanBare(i);
+            }
+            add(i, end);
+            i = end;
+        }
+    }
+
+    /**
+     * Matches {@code (?:--[\w-]*[:=])?(["'])(?:\\.|[^\\])*?\1} at the given index.
+     *
+     * @return the end of the match, or -1 if there is no match.
+     */
+    private int scanQuoted(int start) {
+        final int length = input.length();
+        int i = start;
+        if (input.startsWith("--", i)) {
+            i += 2;
+            while (i < length && isWordOrHyphen(input.charAt(i))) i++;
+            if (i >= length || (input.charAt(i) != ':' && input.charAt(i) != '=')) return -1;
+            i++;
+        }
+        if (i >= length) return -1;
+        final char quote = input.charAt(i);
+        if (quote != '"' && quote != '\'') return -1;
+        i++;
+        while (i < length) {
+            char c = input.charAt(i);
+            if (c == quote) return i + 1;
+            if (c == '\\') {
+                // An escape can't swallow a line terminator, so the quote can't be closed past this point.
+                if (i + 1 >= length) return -1;
+                if (isLineTerminator(input.charAt(i + 1))) {
+                    escapedLineTerminator = true;
+                    return -1;
+                }
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Matches {@code (?:\\.|[^"'\s])+} at the given index. The first character must not be a quote or whitespace.
+     *
+     * @return the end of the match.
+     */
+    private int scanBare(int start) {
+        final int length = input.length();
+        int i = start;
+        while (i < length) {
+            char c = input.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                if (!isLineTerminator(input.charAt(i + 1))) {
+                    i += 2;
+                    continue;
+                }
+                escapedLineTerminator = true;
+                i++;
+            } else if (c == '"' || c == '\'' || isWhitespace(c)) {
+                break;
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private void add(int start, int end) {
+        if (count * 2 == spans.length) spans = Arrays.copyOf(spans, spans.length * 2);
+        spans[count * 2] = start;
+        spans[count * 2 + 1] = end;
+        count++;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int start(int index) {
+        return spans[index * 2];
+    }
+
+    public int end(int index) {
+        return spans[index * 2 + 1];
+    }
+
+    public String token(int index) {
+        return input.substring(spans[index * 2], spans[index * 2 + 1]);
+    }
+
+    /**
+     * @return the first quote character that isn't part of a token, or 0 if all quotes are closed.
+     */
+    public char getUnclosedQuote() {
+        return unclosedQuote;
+    }
+
+    // Same as the regex \s class.
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // Same as the regex [\w-] class.
+    static boolean isWordOrHyphen(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+
+    // Characters that the regex "." does not match.
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Prefix tree of command aliases, used for tab completion.
+ * <p>
+ * Keys are lowercased when they are inserted and looked up, matching the case-insensitive
+ * behavior of {@link org.spongepowered.api.util.StartsWithPredicate}.
+ * Finding everything under a prefix costs the length of the prefix plus the size of the result.
+ *
+ * @param <T> the value type
+ */
+public class AliasTrie<T> {
+
+    private final Node<T> root = new Node<>();
+    private int size = 0;
+
+    public void put(String key, T value) {
+        key = key.toLowerCase();
+        Node<T> node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrCreateChild(key.charAt(i));
+        }
+        node.values.add(value);
+        size++;
+    }
+
+    /**
+     * Adds every value whose key starts with the given prefix to the collection, in key order.
+     *
+     * @param prefix the prefix to search for
+     * @param out    the collection to add matches to
+     * @return the collection that was passed in
+     */
+    public <C extends Collection<? super T>> C collect(String prefix, C out) {
+        prefix = prefix.toLowerCase();
+        Node<T> node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.getChild(prefix.charAt(i));
+        }
+        if (node != null) node.collect(out);
+        return out;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static class Node<T> {
+        // Children are kept sorted by character so lookups can binary search and collection is in key order.
+        private char[] keys = new char[0];
+        @SuppressWarnings("unchecked")
+        private Node<T>[] children = new Node[0];
+        private final List<T> values = new ArrayList<>(1);
+
+        private Node<T> getChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node<T> getOrCreateChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) return children[index];
+            index = -index - 1;
+            Node<T> child = new Node<>();
+
+            char[] newKeys = new char[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            newKeys[index] = c;
+
+            Node<T>[] newChildren = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            newChildren[index] = child;
+
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        private void collect(Collection<? super T> out) {
+            out.addAll(values);
+            for (Node<T> child : children) {
+                child.collect(out);
+            }
+        }
+    }
+}
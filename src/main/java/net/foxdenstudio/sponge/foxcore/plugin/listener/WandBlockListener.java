@@ -25,6 +25,8 @@
 
 package net.foxdenstudio.sponge.foxcore.plugin.listener;
 
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.Counter;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
 import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
 import net.foxdenstudio.sponge.foxcore.plugin.wand.IWand;
 import net.foxdenstudio.sponge.foxcore.plugin.wand.data.WandData;
@@ -42,6 +44,8 @@ import java.util.Optional;
 
 public class WandBlockListener implements EventListener<InteractBlockEvent> {
 
+    private static final Counter INTERACTIONS = FCMetrics.getInstance().counter("wand.interactions");
+
     @Override
     public void handle(@Nonnull InteractBlockEvent event) throws Exception {
         Object root = event.getCause().root();
@@ -62,6 +66,7 @@ public class WandBlockListener implements EventListener<InteractBlockEvent> {
                     if (permission = player.hasPermission("foxcore.wand.use")) {
                         WandData wandData = wandDataOptional.get();
                         IWand wand = wandData.getWand().get();
+                        INTERACTIONS.increment();
 
                         boolean cancel = false;
                         if (air = (event.getTargetBlock().equals(BlockSnapshot.NONE) || event.getTargetBlock().getState().getType().equals(BlockTypes.AIR))) {
@@ -92,6 +97,7 @@ public class WandBlockListener implements EventListener<InteractBlockEvent> {
                     if (computed ? permission : player.hasPermission("foxcore.wand.use")) {
                         WandData wandData = wandDataOptional.get();
                         IWand wand = wandData.getWand().get();
+                        INTERACTIONS.increment();
 
                         if (computed ? air : (event.getTargetBlock().equals(BlockSnapshot.NONE) || event.getTargetBlock().getState().getType().equals(BlockTypes.AIR))) {
                             if (event instanceof InteractBlockEvent.Primary) {
@@ -137,7 +143,7 @@ public class WandBlockListener implements EventListener<InteractBlockEvent> {
                         player.sendMessage(Text.of(TextColors.GREEN, "Successfully added position (" + pos.getX() + ", " + pos.getY() + ", " + pos.getZ() + ")!"));
                         FCCUtil.updatePositions(player);
                     }
-                    FCStateManager.instance().getStateMap().get(player).updateScoreboard();
+                    FCStateManager.instance().getState(player).updateScoreboard();
                     event.setCancelled(true);
                 }
             }
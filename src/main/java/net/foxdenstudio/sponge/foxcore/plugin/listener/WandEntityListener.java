@@ -25,6 +25,8 @@
 
 package net.foxdenstudio.sponge.foxcore.plugin.listener;
 
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.Counter;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
 import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
 import net.foxdenstudio.sponge.foxcore.plugin.wand.IWand;
 import net.foxdenstudio.sponge.foxcore.plugin.wand.data.WandData;
@@ -41,6 +43,8 @@ import java.util.Optional;
 
 public class WandEntityListener implements EventListener<InteractEntityEvent> {
 
+    private static final Counter INTERACTIONS = FCMetrics.getInstance().counter("wand.interactions");
+
     @Override
     public void handle(@Nonnull InteractEntityEvent event) throws Exception {
         Object root = event.getCause().root();
@@ -62,6 +66,7 @@ public class WandEntityListener implements EventListener<InteractEntityEvent> {
                     if (permission = player.hasPermission("foxcore.wand.use")) {
                         WandData wandData = wandDataOptional.get();
                         IWand wand = wandData.getWand().get();
+                        INTERACTIONS.increment();
 
                         boolean cancel = false;
                         if (event instanceof InteractEntityEvent.Primary) {
@@ -85,6 +90,7 @@ public class WandEntityListener implements EventListener<InteractEntityEvent> {
                     if (computed ? permission : player.hasPermission("foxcore.wand.use")) {
                         WandData wandData = wandDataOptional.get();
                         IWand wand = wandData.getWand().get();
+                        INTERACTIONS.increment();
 
                         if (event instanceof InteractEntityEvent.Primary) {
                             wand.leftClickEntity(player, entity);
@@ -123,7 +129,7 @@ public class WandEntityListener implements EventListener<InteractEntityEvent> {
                         player.sendMessage(Text.of(TextColors.GREEN, "Successfully added position (" + pos.getX() + ", " + pos.getY() + ", " + pos.getZ() + ")!"));
                         FCCUtil.updatePositions(player);
                     }
-                    FCStateManager.instance().getStateMap().get(player).updateScoreboard();
+                    FCStateManager.instance().getState(player).updateScoreboard();
                     event.setCancelled(true);
                 }
             }
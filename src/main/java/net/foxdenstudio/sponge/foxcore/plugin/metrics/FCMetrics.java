@@ -0,0 +1,126 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.metrics;
+
+import com.google.common.collect.ImmutableSortedMap;
+import net.foxdenstudio.sponge.foxcore.plugin.FCConfigManager;
+import net.foxdenstudio.sponge.foxcore.plugin.FoxCoreMain;
+import org.slf4j.Logger;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process registry of named counters, gauges and latency histograms.
+ * <p>
+ * Getting a metric creates it if it doesn't exist yet, so hot paths should hold on to the returned object
+ * instead of looking it up every time. Names are dot separated, starting with the subsystem.
+ */
+public final class FCMetrics {
+
+    private static final FCMetrics instance = new FCMetrics();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private FCMetrics() {
+    }
+
+    public static FCMetrics getInstance() {
+        return instance;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a value that is read whenever the metrics are shown. Replaces any gauge of the same name.
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public SortedMap<String, Counter> getCounters() {
+        return ImmutableSortedMap.copyOf(counters);
+    }
+
+    public SortedMap<String, LongSupplier> getGauges() {
+        return ImmutableSortedMap.copyOf(gauges);
+    }
+
+    public SortedMap<String, LatencyHistogram> getHistograms() {
+        return ImmutableSortedMap.copyOf(histograms);
+    }
+
+    public static String formatHistogram(LatencyHistogram histogram) {
+        return String.format("n=%d p50=%.3fms p99=%.3fms max=%.3fms",
+                histogram.getCount(),
+                histogram.getPercentile(50, TimeUnit.MILLISECONDS),
+                histogram.getPercentile(99, TimeUnit.MILLISECONDS),
+                (double) histogram.getMax() / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    public void dump(Logger logger) {
+        StringBuilder builder = new StringBuilder("FoxCore metrics:");
+        for (Map.Entry<String, Counter> entry : getCounters().entrySet()) {
+            builder.append("\n  ").append(entry.getKey()).append(" = ").append(entry.getValue().get());
+        }
+        for (Map.Entry<String, LongSupplier> entry : getGauges().entrySet()) {
+            builder.append("\n  ").append(entry.getKey()).append(" = ").append(entry.getValue().getAsLong());
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : getHistograms().entrySet()) {
+            builder.append("\n  ").append(entry.getKey()).append(": ").append(formatHistogram(entry.getValue()));
+        }
+        logger.info(builder.toString());
+    }
+
+    @Listener
+    public void onServerStarted(GameStartedServerEvent event) {
+        long interval = FCConfigManager.getInstance().getMetricsLogInterval();
+        if (interval > 0) {
+            Sponge.getScheduler().createTaskBuilder()
+                    .name("FoxCore metrics log")
+                    .async()
+                    .delay(interval, TimeUnit.MINUTES)
+                    .interval(interval, TimeUnit.MINUTES)
+                    .execute(() -> dump(FoxCoreMain.instance().logger()))
+                    .submit(FoxCoreMain.instance());
+        }
+    }
+}
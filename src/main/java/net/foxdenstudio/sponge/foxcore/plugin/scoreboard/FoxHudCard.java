@@ -1,7 +1,93 @@
 package net.foxdenstudio.sponge.foxcore.plugin.scoreboard;
 
-public class FoxHudCard {
+import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.plugin.FoxCoreMain;
+import org.spongepowered.api.text.Text;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * A block of lines shown on a {@link FoxScoreboard}.
+ * <p>
+ * After a card has been {@link #invalidate() invalidated}, the main thread takes a {@link #snapshot()} of whatever
+ * the card shows, and the lines are laid out from that snapshot off the main thread.
+ * Cards with a higher priority are stacked above the others.
+ *
+ * @param <S> the snapshot type. Snapshots must not change once they are taken.
+ */
+public abstract class FoxHudCard<S> {
 
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private final AtomicReference<S> pending = new AtomicReference<>();
+    private volatile List<Text> lines = ImmutableList.of();
+
+    /**
+     * Shown as the scoreboard title if this is the top card, otherwise as the first line of the card.
+     * This is read while stacking cards off the main thread.
+     */
+    public abstract Text getTitle();
+
+    /**
+     * Copies what the card shows. This is called on the main thread, and must not return null.
+     */
+    protected abstract S snapshot();
+
+    /**
+     * Lays out the lines of a snapshot. This is called from an async thread.
+     */
+    protected abstract List<Text> layout(S snapshot);
+
+    public int getPriority() {
+        return 0;
+    }
+
+    public void invalidate() {
+        this.dirty.set(true);
+    }
+
+    public boolean isDirty() {
+        return this.dirty.get();
+    }
+
+    public List<Text> getLines() {
+        return this.lines;
+    }
+
+    /**
+     * Takes a snapshot if the card is dirty. Main thread only.
+     *
+     * @return whether a snapshot was taken.
+     */
+    boolean takeSnapshot() {
+        if (!this.dirty.compareAndSet(true, false)) return false;
+        try {
+            this.pending.set(snapshot());
+            return true;
+        } catch (Exception e) {
+            FoxCoreMain.instance().logger().error("Error taking HUD card snapshot", e);
+            return false;
+        }
+    }
+
+    /**
+     * Lays out the latest snapshot, if one was taken since the last refresh.
+     *
+     * @return whether the lines changed.
+     */
+    boolean refresh() {
+        S snapshot = this.pending.getAndSet(null);
+        if (snapshot == null) return false;
+        List<Text> newLines;
+        try {
+            newLines = ImmutableList.copyOf(layout(snapshot));
+        } catch (Exception e) {
+            FoxCoreMain.instance().logger().error("Error laying out HUD card lines", e);
+            return false;
+        }
+        if (newLines.equals(this.lines)) return false;
+        this.lines = newLines;
+        return true;
+    }
 }
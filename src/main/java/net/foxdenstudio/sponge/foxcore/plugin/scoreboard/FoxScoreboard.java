@@ -1,4 +1,208 @@
 package net.foxdenstudio.sponge.foxcore.plugin.scoreboard;
 
+import com.google.common.collect.ImmutableMap;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.Counter;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.scoreboard.Scoreboard;
+import org.spongepowered.api.scoreboard.critieria.Criteria;
+import org.spongepowered.api.scoreboard.displayslot.DisplaySlots;
+import org.spongepowered.api.scoreboard.objective.Objective;
+import org.spongepowered.api.text.Text;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A sidebar made up of a stack of {@link FoxHudCard}s.
+ * <p>
+ * {@link #prepareRefresh()} snapshots the dirty cards on the main thread, and {@link #refresh()} lays those snapshots
+ * out into a target set of lines off the main thread. {@link #apply(int)} then moves the shown sidebar towards that
+ * target a few score changes at a time on the main thread.
+ * <p>
+ * Cards can be added and invalidated from any thread. The Sponge scoreboard is only created once it is first needed
+ * on the main thread.
+ */
 public class FoxScoreboard {
+
+    public static final int MAX_LINES = 15;
+
+    private static final Text EMPTY_TITLE = Text.of();
+    private static final Counter REBUILDS = FCMetrics.getInstance().counter("hud.rebuilds");
+    private static final Counter MUTATIONS = FCMetrics.getInstance().counter("hud.mutations");
+
+    private final List<FoxHudCard<?>> cards = new CopyOnWriteArrayList<>();
+    // Set on the main thread when snapshots are handed off, and cleared once they have been laid out.
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Set when the stack itself changed, so the layout is redone even if no card's lines did.
+    private final AtomicBoolean restack = new AtomicBoolean();
+
+    private volatile Text targetTitle = EMPTY_TITLE;
+    private volatile Map<Text, Integer> targetLines = ImmutableMap.of();
+    // Bumped after every new target is published.
+    private final AtomicLong targetVersion = new AtomicLong();
+    private final AtomicBoolean showRequested = new AtomicBoolean();
+
+    // Only touched on the main thread.
+    private Scoreboard scoreboard;
+    private Objective objective;
+    private final Map<Text, Integer> shownLines = new HashMap<>();
+    private Text shownTitle = EMPTY_TITLE;
+    private long appliedVersion = 0;
+
+    public void addCard(FoxHudCard<?> card) {
+        if (!this.cards.contains(card)) this.cards.add(card);
+        card.invalidate();
+        this.restack.set(true);
+    }
+
+    public boolean removeCard(FoxHudCard<?> card) {
+        if (!this.cards.remove(card)) return false;
+        this.restack.set(true);
+        return true;
+    }
+
+    public List<FoxHudCard<?>> getCards() {
+        return this.cards;
+    }
+
+    /**
+     * Main thread only.
+     */
+    public Scoreboard getScoreboard() {
+        if (this.scoreboard == null) {
+            this.scoreboard = Scoreboard.builder().build();
+            this.objective = Objective.builder().displayName(EMPTY_TITLE).name("foxhud").criterion(Criteria.DUMMY).build();
+            this.scoreboard.addObjective(this.objective);
+            this.scoreboard.updateDisplaySlot(this.objective, DisplaySlots.SIDEBAR);
+        }
+        return this.scoreboard;
+    }
+
+    /**
+     * Whether the Sponge scoreboard has been created and is the one the player is viewing. Main thread only.
+     */
+    boolean isShownTo(Player player) {
+        return this.scoreboard != null && player.getScoreboard() == this.scoreboard;
+    }
+
+    /**
+     * Invalidates every card, and shows the scoreboard to its player again even if the lines turn out the same.
+     */
+    public void invalidate() {
+        this.cards.forEach(FoxHudCard::invalidate);
+        this.showRequested.set(true);
+    }
+
+    /**
+     * Takes snapshots of the dirty cards. Main thread only.
+     * Once this returns true, it returns false until {@link #refresh()} has run.
+     *
+     * @return whether {@link #refresh()} should be run.
+     */
+    boolean prepareRefresh() {
+        if (this.refreshing.get()) return false;
+        boolean changed = this.restack.get();
+        for (FoxHudCard<?> card : this.cards) {
+            changed |= card.takeSnapshot();
+        }
+        if (changed) this.refreshing.set(true);
+        return changed;
+    }
+
+    public boolean hasLines() {
+        return !this.targetLines.isEmpty();
+    }
+
+    /**
+     * Lays out the snapshots taken by {@link #prepareRefresh()} and stacks them into the new target lines.
+     * Runs off the main thread.
+     */
+    void refresh() {
+        try {
+            boolean changed = this.restack.getAndSet(false);
+            for (FoxHudCard<?> card : this.cards) {
+                changed |= card.refresh();
+            }
+            if (!changed) return;
+            List<FoxHudCard<?>> stack = new ArrayList<>(this.cards);
+            stack.sort(Comparator.comparingInt((FoxHudCard<?> card) -> card.getPriority()).reversed());
+            Text title = null;
+            List<Text> lines = new ArrayList<>();
+            for (FoxHudCard<?> card : stack) {
+                List<Text> cardLines = card.getLines();
+                if (cardLines.isEmpty()) continue;
+                if (title == null) title = card.getTitle();
+                else if (lines.size() < MAX_LINES) lines.add(card.getTitle());
+                for (Text line : cardLines) {
+                    if (lines.size() >= MAX_LINES) break;
+                    lines.add(line);
+                }
+            }
+            // The sidebar is sorted by score, so the first line gets the highest one.
+            Map<Text, Integer> target = new HashMap<>();
+            for (int i = 0; i < lines.size(); i++) {
+                target.putIfAbsent(lines.get(i), lines.size() - i);
+            }
+            this.targetTitle = title == null ? EMPTY_TITLE : title;
+            this.targetLines = ImmutableMap.copyOf(target);
+            this.targetVersion.incrementAndGet();
+            this.showRequested.set(true);
+            REBUILDS.increment();
+        } finally {
+            this.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Applies up to the given number of score changes towards the target lines. Main thread only.
+     *
+     * @return the number of changes applied.
+     */
+    public int apply(int budget) {
+        final long version = this.targetVersion.get();
+        if (version == this.appliedVersion) return 0;
+        getScoreboard();
+        final Map<Text, Integer> target = this.targetLines;
+        final Text title = this.targetTitle;
+        int applied = 0;
+        for (Iterator<Map.Entry<Text, Integer>> it = this.shownLines.entrySet().iterator(); it.hasNext() && applied < budget; ) {
+            Text line = it.next().getKey();
+            if (!target.containsKey(line)) {
+                this.objective.removeScore(line);
+                it.remove();
+                applied++;
+            }
+        }
+        for (Map.Entry<Text, Integer> entry : target.entrySet()) {
+            if (applied >= budget) break;
+            if (!entry.getValue().equals(this.shownLines.get(entry.getKey()))) {
+                this.objective.getOrCreateScore(entry.getKey()).setScore(entry.getValue());
+                this.shownLines.put(entry.getKey(), entry.getValue());
+                applied++;
+            }
+        }
+        if (applied < budget && !title.equals(this.shownTitle)) {
+            this.objective.setDisplayName(title);
+            this.shownTitle = title;
+            applied++;
+        }
+        if (applied < budget) this.appliedVersion = version;
+        MUTATIONS.add(applied);
+        return applied;
+    }
+
+    /**
+     * Whether the lines changed since this was last called, meaning the scoreboard should be shown again.
+     */
+    boolean takeShowRequest() {
+        return this.showRequested.getAndSet(false);
+    }
 }
@@ -1,39 +1,137 @@
 package net.foxdenstudio.sponge.foxcore.plugin.scoreboard;
 
-import net.foxdenstudio.sponge.foxcore.common.util.WeakCacheMap;
+import net.foxdenstudio.sponge.foxcore.plugin.FCConfigManager;
+import net.foxdenstudio.sponge.foxcore.plugin.FoxCoreMain;
+import net.foxdenstudio.sponge.foxcore.plugin.command.CommandHUD;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.LatencyHistogram;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
+import org.spongepowered.api.scheduler.SpongeExecutorService;
+import org.spongepowered.api.scoreboard.Scoreboard;
 
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
+/**
+ * Keeps a stack of scoreboards for every player and drives the HUD.
+ * <p>
+ * Once per tick, the top scoreboard of each player with the HUD on has its dirty cards snapshotted and then laid out
+ * on an async thread, and gets at most a configured number of score changes applied to it.
+ * <p>
+ * The stacks are only touched on the main thread. Calls from other threads are moved there.
+ */
 public class FoxScoreboardManager {
 
     private static FoxScoreboardManager instance = new FoxScoreboardManager();
 
-    Map<Player, Deque<FoxScoreboard>> playerScoreboards = new WeakCacheMap<>((k, m) -> {
-        if(k instanceof Player){
-            Player player = (Player) k;
-            Deque<FoxScoreboard> deque = new LinkedList<>();
-            m.put(player, deque);
-            return deque;
-        } else return null;
-    });
+    // Keyed by UUID, since players get a new entity on respawn and dimension change.
+    private final Map<UUID, Deque<FoxScoreboard>> playerScoreboards = new HashMap<>();
+
+    private final LatencyHistogram tickTime = FCMetrics.getInstance().histogram("hud.tick");
+    private SpongeExecutorService executor;
+    private int mutationsPerTick;
 
     public static FoxScoreboardManager getInstance() {
         return instance;
     }
 
+    /**
+     * Puts a scoreboard on top of the player's stack. It is shown from the next tick on.
+     */
     public void display(Player player, FoxScoreboard scoreboard) {
-        Deque<FoxScoreboard> scoreboards = playerScoreboards.get(player);
+        if (!Sponge.getServer().isMainThread()) {
+            runOnMainThread(() -> display(player, scoreboard));
+            return;
+        }
+        Deque<FoxScoreboard> scoreboards = playerScoreboards.computeIfAbsent(player.getUniqueId(), uuid -> new LinkedList<>());
         scoreboards.remove(scoreboard);
         scoreboards.addFirst(scoreboard);
-        //player.setScoreboard(scoreboard);
+        scoreboard.invalidate();
+    }
+
+    /**
+     * Removes a scoreboard from the player's stack, revealing the one below it.
+     */
+    public void remove(Player player, FoxScoreboard scoreboard) {
+        if (!Sponge.getServer().isMainThread()) {
+            runOnMainThread(() -> remove(player, scoreboard));
+            return;
+        }
+        Deque<FoxScoreboard> scoreboards = playerScoreboards.get(player.getUniqueId());
+        if (scoreboards == null) return;
+        boolean top = scoreboard == scoreboards.peekFirst();
+        if (!scoreboards.remove(scoreboard) || !top) return;
+        FoxScoreboard next = scoreboards.peekFirst();
+        if (next != null) next.invalidate();
+        else if (scoreboard.isShownTo(player)) showServerScoreboard(player);
     }
 
+    /**
+     * Main thread only.
+     */
     public Optional<FoxScoreboard> getActiveScoreboard(Player player) {
-        return Optional.ofNullable(playerScoreboards.get(player).peekFirst());
+        Deque<FoxScoreboard> scoreboards = playerScoreboards.get(player.getUniqueId());
+        return scoreboards == null ? Optional.empty() : Optional.ofNullable(scoreboards.peekFirst());
+    }
+
+    @Listener
+    public void onServerStarted(GameStartedServerEvent event) {
+        this.mutationsPerTick = FCConfigManager.getInstance().getHudMutationsPerTick();
+        this.executor = Sponge.getScheduler().createAsyncExecutor(FoxCoreMain.instance());
+        Sponge.getScheduler().createTaskBuilder()
+                .name("FoxCore HUD")
+                .intervalTicks(1)
+                .execute(this::tick)
+                .submit(FoxCoreMain.instance());
+    }
+
+    private void tick() {
+        final long start = System.nanoTime();
+        for (Iterator<Map.Entry<UUID, Deque<FoxScoreboard>>> it = playerScoreboards.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<UUID, Deque<FoxScoreboard>> entry = it.next();
+            Optional<Player> playerOpt = Sponge.getServer().getPlayer(entry.getKey());
+            if (!playerOpt.isPresent()) {
+                // Left over from a display call that was moved here after the player disconnected.
+                it.remove();
+                continue;
+            }
+            FoxScoreboard scoreboard = entry.getValue().peekFirst();
+            if (scoreboard == null) continue;
+            Player player = playerOpt.get();
+            if (!CommandHUD.instance().getIsHUDEnabled().get(player.getUniqueId())) continue;
+            if (scoreboard.prepareRefresh()) this.executor.execute(scoreboard::refresh);
+            scoreboard.apply(this.mutationsPerTick);
+            if (scoreboard.takeShowRequest()) {
+                if (scoreboard.hasLines()) {
+                    if (!scoreboard.isShownTo(player)) player.setScoreboard(scoreboard.getScoreboard());
+                } else if (scoreboard.isShownTo(player)) {
+                    showServerScoreboard(player);
+                }
+            }
+        }
+        this.tickTime.recordSince(start);
+    }
+
+    @Listener
+    public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event) {
+        playerScoreboards.remove(event.getTargetEntity().getUniqueId());
     }
 
+    private static void runOnMainThread(Runnable runnable) {
+        Sponge.getScheduler().createTaskBuilder().execute(runnable).submit(FoxCoreMain.instance());
+    }
+
+    private static void showServerScoreboard(Player player) {
+        Optional<Scoreboard> serverScoreboard = Sponge.getServer().getServerScoreboard();
+        player.setScoreboard(serverScoreboard.isPresent() ? serverScoreboard.get() : Scoreboard.builder().build());
+    }
 }
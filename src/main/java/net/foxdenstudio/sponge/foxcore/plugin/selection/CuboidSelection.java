@@ -4,6 +4,7 @@ import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.ImmutableList;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
 import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import net.foxdenstudio.sponge.foxcore.plugin.util.IntTriConsumer;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.text.Text;
@@ -28,6 +29,11 @@ public class CuboidSelection implements ISelection {
         return new SelectionIterator();
     }
 
+    @Override
+    public void forEachBlock(IntTriConsumer consumer) {
+        boundingBox.forEachBlock(consumer);
+    }
+
     @Override
     public boolean contains(int x, int y, int z) {
         return boundingBox.contains(x, y, z);
@@ -63,6 +69,11 @@ public class CuboidSelection implements ISelection {
         return Optional.of(boundingBox);
     }
 
+    @Override
+    public boolean isSectionedByBounds() {
+        return true;
+    }
+
     @Override
     public ProcessResult modify(CommandSource source, String arguments) throws CommandException {
         return ProcessResult.failure();
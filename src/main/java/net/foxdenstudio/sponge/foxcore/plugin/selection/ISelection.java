@@ -3,10 +3,15 @@ package net.foxdenstudio.sponge.foxcore.plugin.selection;
 import com.flowpowered.math.vector.Vector3i;
 import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
 import net.foxdenstudio.sponge.foxcore.plugin.util.IModifiable;
+import net.foxdenstudio.sponge.foxcore.plugin.util.IntTriConsumer;
 import net.foxdenstudio.sponge.foxcore.plugin.util.IWorldlessBounded;
 import org.spongepowered.api.text.Text;
 
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface ISelection extends Iterable<Vector3i>, IWorldlessBounded, IModifiable {
 
@@ -26,4 +31,50 @@ public interface ISelection extends Iterable<Vector3i>, IWorldlessBounded, IModi
     default boolean isEmpty() {
         return size() == 0;
     }
+
+    /**
+     * Visits every selected block without allocating a vector for each one.
+     */
+    default void forEachBlock(IntTriConsumer consumer) {
+        for (Vector3i pos : this) {
+            consumer.accept(pos.getX(), pos.getY(), pos.getZ());
+        }
+    }
+
+    /**
+     * Visits boxes that each lie within a single 16x16x16 chunk section and together cover the selection.
+     * Sections with no selected blocks may be skipped. Unless the selection is a cuboid,
+     * blocks inside a box still have to be checked with {@link #contains(int, int, int)}.
+     * The boxes are independent, so they can be processed in parallel.
+     */
+    default void forEachSection(Consumer<BoundingBox3> consumer) {
+        bounds().ifPresent(bounds -> bounds.forEachSection(consumer));
+    }
+
+    /**
+     * Whether {@link #forEachSection(Consumer)} yields exactly the sections of {@link #bounds()},
+     * so they can be worked out from the bounds instead of being visited one by one.
+     */
+    default boolean isSectionedByBounds() {
+        return false;
+    }
+
+    /**
+     * Splits by chunk section, see {@link #forEachSection(Consumer)}.
+     */
+    @Override
+    default Spliterator<Vector3i> spliterator() {
+        return new SectionSpliterator(this);
+    }
+
+    default Stream<Vector3i> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Scans the selection across the common fork join pool, a chunk section at a time.
+     */
+    default Stream<Vector3i> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
 }
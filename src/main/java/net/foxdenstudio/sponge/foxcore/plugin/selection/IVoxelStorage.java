@@ -0,0 +1,60 @@
+package net.foxdenstudio.sponge.foxcore.plugin.selection;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import net.foxdenstudio.sponge.foxcore.plugin.util.IntTriConsumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Block positions backing a {@link RasterSelection}.
+ */
+public interface IVoxelStorage extends Iterable<Vector3i> {
+
+    boolean add(int x, int y, int z);
+
+    boolean remove(int x, int y, int z);
+
+    boolean contains(int x, int y, int z);
+
+    /**
+     * @return The number of blocks stored.
+     */
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the smallest box containing every block, or null if empty.
+     */
+    @Nullable
+    BoundingBox3 bounds();
+
+    Cursor cursor();
+
+    /**
+     * Visits the coordinates of each non-empty 16x16x16 section, i.e. block coordinates shifted right by 4.
+     */
+    void forEachSection(IntTriConsumer consumer);
+
+    void clear();
+
+    /**
+     * Walks the positions without allocating a vector per block. Call {@link #next()} before reading each position.
+     */
+    interface Cursor {
+
+        /**
+         * @return whether the cursor moved to another block.
+         */
+        boolean next();
+
+        int x();
+
+        int y();
+
+        int z();
+    }
+}
@@ -0,0 +1,297 @@
+package net.foxdenstudio.sponge.foxcore.plugin.selection;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import net.foxdenstudio.sponge.foxcore.plugin.util.IntTriConsumer;
+import org.mapdb.Atomic;
+import org.mapdb.BTreeMap;
+
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Block positions kept in a MapDB tree map, one entry per 16x16x16 section, in the same format as {@link VoxelSet}.
+ * <p>
+ * Only a bounded number of decoded sections are held on heap. Changed sections are written back
+ * when they are evicted or on {@link #flush()}. Iteration walks the tree in key order and decodes one section
+ * at a time, so sections are paged in from the file as they are reached.
+ * <p>
+ * Instances are created by {@link RasterSelectionStore}. Not thread safe.
+ */
+public class MapDBVoxelStorage implements IVoxelStorage {
+
+    private final String name;
+    private final BTreeMap<Long, byte[]> sections;
+    private final Atomic.Long storedSize;
+    private final Map<Long, long[]> cache;
+    private final Set<Long> dirty = new HashSet<>();
+
+    private int size;
+    private int minX, minY, minZ, maxX, maxY, maxZ;
+    // The bounds aren't stored, so they start out stale and are recomputed on demand.
+    private boolean boundsStale = true;
+    private BoundingBox3 bounds;
+
+    MapDBVoxelStorage(String name, BTreeMap<Long, byte[]> sections, Atomic.Long storedSize, final int cacheSections) {
+        this.name = name;
+        this.sections = sections;
+        this.storedSize = storedSize;
+        this.size = (int) storedSize.get();
+        this.cache = new LinkedHashMap<Long, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+                if (size() <= cacheSections) return false;
+                writeBack(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean add(int x, int y, int z) {
+        final long key = VoxelSet.sectionKey(x >> 4, y >> 4, z >> 4);
+        final int local = VoxelSet.localIndex(x, y, z);
+        long[] bits = load(key, true);
+        if ((bits[local >>> 6] & (1L << local)) != 0) return false;
+        bits[local >>> 6] |= 1L << local;
+        dirty.add(key);
+        if (size++ == 0) {
+            minX = maxX = x;
+            minY = maxY = y;
+            minZ = maxZ = z;
+            boundsStale = false;
+        } else if (!boundsStale) {
+            if (x < minX) minX = x;
+            if (y < minY) minY = y;
+            if (z < minZ) minZ = z;
+            if (x > maxX) maxX = x;
+            if (y > maxY) maxY = y;
+            if (z > maxZ) maxZ = z;
+        }
+        bounds = null;
+        return true;
+    }
+
+    @Override
+    public boolean remove(int x, int y, int z) {
+        final long key = VoxelSet.sectionKey(x >> 4, y >> 4, z >> 4);
+        final int local = VoxelSet.localIndex(x, y, z);
+        long[] bits = load(key, false);
+        if (bits == null || (bits[local >>> 6] & (1L << local)) == 0) return false;
+        bits[local >>> 6] &= ~(1L << local);
+        dirty.add(key);
+        size--;
+        if (x == minX || y == minY || z == minZ || x == maxX || y == maxY || z == maxZ) boundsStale = true;
+        bounds = null;
+        return true;
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        long[] bits = load(VoxelSet.sectionKey(x >> 4, y >> 4, z >> 4), false);
+        if (bits == null) return false;
+        final int local = VoxelSet.localIndex(x, y, z);
+        return (bits[local >>> 6] & (1L << local)) != 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Nullable
+    @Override
+    public BoundingBox3 bounds() {
+        if (size == 0) return null;
+        if (boundsStale) recalculateBounds();
+        if (bounds == null) bounds = new BoundingBox3(new Vector3i(minX, minY, minZ), new Vector3i(maxX, maxY, maxZ));
+        return bounds;
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+        dirty.clear();
+        sections.clear();
+        size = 0;
+        storedSize.set(0);
+        boundsStale = false;
+        bounds = null;
+    }
+
+    /**
+     * Writes every changed section and the size back to the map.
+     */
+    public void flush() {
+        for (Map.Entry<Long, long[]> entry : cache.entrySet()) {
+            writeBack(entry.getKey(), entry.getValue());
+        }
+        storedSize.set(size);
+    }
+
+    /**
+     * Flushes, then walks the sections in key order.
+     */
+    @Override
+    public Cursor cursor() {
+        flush();
+        return new StorageCursor();
+    }
+
+    /**
+     * Flushes, then walks the section keys without decoding any sections.
+     */
+    @Override
+    public void forEachSection(IntTriConsumer consumer) {
+        flush();
+        for (long key : sections.keySet()) {
+            consumer.accept(VoxelSet.sectionX(key), VoxelSet.sectionY(key), VoxelSet.sectionZ(key));
+        }
+    }
+
+    @Override
+    public Iterator<Vector3i> iterator() {
+        final Cursor cursor = cursor();
+        return new Iterator<Vector3i>() {
+            boolean ready = false;
+            boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    hasNext = cursor.next();
+                    ready = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Vector3i next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return new Vector3i(cursor.x(), cursor.y(), cursor.z());
+            }
+        };
+    }
+
+    private long[] load(long key, boolean create) {
+        long[] bits = cache.get(key);
+        if (bits == null) {
+            byte[] data = sections.get(key);
+            if (data != null) {
+                bits = VoxelSet.decodeSection(data);
+            } else if (create) {
+                bits = new long[64];
+            } else {
+                return null;
+            }
+            cache.put(key, bits);
+        }
+        return bits;
+    }
+
+    private void writeBack(Long key, long[] bits) {
+        if (!dirty.remove(key)) return;
+        boolean empty = true;
+        for (long word : bits) {
+            if (word != 0) {
+                empty = false;
+                break;
+            }
+        }
+        if (empty) {
+            sections.remove(key);
+        } else {
+            sections.put(key, VoxelSet.encodeSection(bits));
+        }
+    }
+
+    private void recalculateBounds() {
+        Cursor cursor = cursor();
+        cursor.next();
+        minX = maxX = cursor.x();
+        minY = maxY = cursor.y();
+        minZ = maxZ = cursor.z();
+        while (cursor.next()) {
+            int x = cursor.x(), y = cursor.y(), z = cursor.z();
+            if (x < minX) minX = x;
+            if (y < minY) minY = y;
+            if (z < minZ) minZ = z;
+            if (x > maxX) maxX = x;
+            if (y > maxY) maxY = y;
+            if (z > maxZ) maxZ = z;
+        }
+        boundsStale = false;
+    }
+
+    private final class StorageCursor implements Cursor {
+
+        private final Iterator<Map.Entry<Long, byte[]>> entries = sections.entrySet().iterator();
+        private long[] bits;
+        private int index;
+        private int baseX, baseY, baseZ;
+        private int x, y, z;
+
+        @Override
+        public boolean next() {
+            while (true) {
+                if (bits != null) {
+                    int local = nextSetBit(index + 1);
+                    if (local >= 0) {
+                        index = local;
+                        x = baseX | (local & 15);
+                        z = baseZ | (local >>> 4 & 15);
+                        y = baseY | (local >>> 8);
+                        return true;
+                    }
+                }
+                if (!entries.hasNext()) {
+                    bits = null;
+                    return false;
+                }
+                Map.Entry<Long, byte[]> entry = entries.next();
+                long key = entry.getKey();
+                bits = VoxelSet.decodeSection(entry.getValue());
+                baseX = VoxelSet.sectionX(key) << 4;
+                baseY = VoxelSet.sectionY(key) << 4;
+                baseZ = VoxelSet.sectionZ(key) << 4;
+                index = -1;
+            }
+        }
+
+        @Override
+        public int x() {
+            return x;
+        }
+
+        @Override
+        public int y() {
+            return y;
+        }
+
+        @Override
+        public int z() {
+            return z;
+        }
+
+        private int nextSetBit(int from) {
+            if (from >= 4096) return -1;
+            int word = from >>> 6;
+            long w = bits[word] & (-1L << from);
+            while (true) {
+                if (w != 0) return word << 6 | Long.numberOfTrailingZeros(w);
+                if (++word == bits.length) return -1;
+                w = bits[word];
+            }
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package net.foxdenstudio.sponge.foxcore.plugin.selection;
 
+import com.flowpowered.math.GenericMath;
 import com.flowpowered.math.vector.Vector3d;
 import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.plugin.FCConfigManager;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
 import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
+import net.foxdenstudio.sponge.foxcore.plugin.util.IntTriConsumer;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.text.Text;
@@ -13,46 +15,46 @@ import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 import javax.annotation.Nullable;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 /**
  * Created by Fox on 9/14/2016.
  */
 public class RasterSelection implements ISelection {
 
-    private final HashSet<Vector3i> positions;
-    private BoundingBox3 bounds;
-    private boolean dirty = true;
+    private IVoxelStorage positions;
+    private final IVoxelStorage view = new PositionsView();
 
     public RasterSelection() {
-        positions = new HashSet<>();
+        positions = new VoxelSet();
     }
 
-    public RasterSelection(HashSet<Vector3i> positions) {
-        this.positions = positions;
+    public RasterSelection(Collection<Vector3i> positions) {
+        this.positions = new VoxelSet(positions);
+        spillIfLarge();
     }
 
-    public static void main(String[] args) {
-        HashSet<Vector3i> set = new HashSet<>();
-        //Random random = new Random();
-        System.out.println("Generating values");
-        int x = 0;
-        for (int i = 0; i < 50000000; i++) {
-            set.add(new Vector3i(x++, x++, x++));
-        }
-        RasterSelection selection = new RasterSelection(set);
-        System.out.println("Starting calculation");
-        long start = System.currentTimeMillis();
-        selection.calculateBounds();
-        long end = System.currentTimeMillis();
-        System.out.println("Time: " + (end - start));
-
-        try (DB db = DBMaker.memoryDB().make()) {
+    /**
+     * Heap storages over the spill threshold are copied to disk straight away,
+     * so the given storage should only be changed through {@link #getPositions()} afterwards.
+     */
+    public RasterSelection(IVoxelStorage positions) {
+        this.positions = positions;
+        spillIfLarge();
+    }
 
-        }
+    /**
+     * Opens a selection stored on disk under the given name, which survives restarts.
+     * Call {@link #flush()} to make sure changes are written.
+     */
+    public static RasterSelection open(String name) {
+        return new RasterSelection(RasterSelectionStore.getInstance().open(name));
     }
 
     @Override
@@ -77,8 +79,7 @@ public class RasterSelection implements ISelection {
 
     @Override
     public Optional<BoundingBox3> bounds() {
-        calculateBounds();
-        return Optional.ofNullable(bounds);
+        return Optional.ofNullable(positions.bounds());
     }
 
     @Override
@@ -86,54 +87,135 @@ public class RasterSelection implements ISelection {
         return positions.iterator();
     }
 
+    @Override
+    public void forEachBlock(IntTriConsumer consumer) {
+        IVoxelStorage.Cursor cursor = positions.cursor();
+        while (cursor.next()) {
+            consumer.accept(cursor.x(), cursor.y(), cursor.z());
+        }
+    }
+
+    /**
+     * Only visits sections that hold at least one block.
+     */
+    @Override
+    public void forEachSection(Consumer<BoundingBox3> consumer) {
+        BoundingBox3 bounds = positions.bounds();
+        if (bounds == null) return;
+        positions.forEachSection((sx, sy, sz) -> {
+            BoundingBox3 section = new BoundingBox3(new Vector3i(sx << 4, sy << 4, sz << 4),
+                    new Vector3i((sx << 4) + 15, (sy << 4) + 15, (sz << 4) + 15)).intersect(bounds);
+            if (section != null) consumer.accept(section);
+        });
+    }
+
+    /**
+     * Heap rasters are split by section and walk each section's blocks, rather than probing every cell of it.
+     * Rasters on disk can't be read from several threads at once, so those are split by
+     * buffering blocks from a single iterator instead.
+     */
+    @Override
+    public Spliterator<Vector3i> spliterator() {
+        if (positions instanceof VoxelSet) return positions.spliterator();
+        if (!isOnDisk()) return ISelection.super.spliterator();
+        return Spliterators.spliterator(positions.iterator(), positions.size(),
+                Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.SIZED);
+    }
+
     @Override
     public boolean contains(int x, int y, int z) {
-        return positions.contains(new Vector3i(x, y, z));
+        return positions.contains(x, y, z);
     }
 
     @Override
     public boolean contains(double x, double y, double z) {
-        return positions.contains(new Vector3i(x, y, z));
+        return positions.contains(GenericMath.floor(x), GenericMath.floor(y), GenericMath.floor(z));
     }
 
     @Override
     public boolean contains(Vector3i vec) {
-        return positions.contains(vec);
+        return positions.contains(vec.getX(), vec.getY(), vec.getZ());
     }
 
     @Override
     public boolean contains(Vector3d vec) {
-        return positions.contains(vec.toInt());
-    }
-
-    private void calculateBounds() {
-        if (dirty) {
-            if (this.positions.isEmpty()) {
-                this.bounds = null;
-            } else {
-                int
-                        minX = Integer.MAX_VALUE,
-                        minY = Integer.MAX_VALUE,
-                        minZ = Integer.MAX_VALUE,
-                        maxX = Integer.MIN_VALUE,
-                        maxY = Integer.MIN_VALUE,
-                        maxZ = Integer.MIN_VALUE;
-
-                for (Vector3i vec : this.positions) {
-                    int x = vec.getX(), y = vec.getY(), z = vec.getZ();
-                    minX = Math.min(minX, x);
-                    minY = Math.min(minY, y);
-                    minZ = Math.min(minZ, z);
-                    maxX = Math.max(maxX, x);
-                    maxY = Math.max(maxY, y);
-                    maxZ = Math.max(maxZ, z);
-                }
-                this.bounds = new BoundingBox3(
-                        new Vector3i(minX, minY, minZ),
-                        new Vector3i(maxX, maxY, maxZ)
-                );
-            }
-            dirty = false;
+        return contains(vec.getX(), vec.getY(), vec.getZ());
+    }
+
+    public boolean add(int x, int y, int z) {
+        if (!positions.add(x, y, z)) return false;
+        spillIfLarge();
+        return true;
+    }
+
+    public boolean remove(int x, int y, int z) {
+        return positions.remove(x, y, z);
+    }
+
+    /**
+     * @return a view of the backing storage. Changes to it are reflected in this selection,
+     * and it keeps working after the selection spills to disk.
+     */
+    public IVoxelStorage getPositions() {
+        return view;
+    }
+
+    /**
+     * Whether the blocks are kept in a disk storage, which can't be read from several threads at once.
+     */
+    public boolean isOnDisk() {
+        return positions instanceof MapDBVoxelStorage;
+    }
+
+    /**
+     * Copies this selection into a named disk storage that survives restarts.
+     *
+     * @return the stored copy, or this selection if it already is the named storage.
+     */
+    public RasterSelection persist(String name) {
+        MapDBVoxelStorage storage = RasterSelectionStore.getInstance().open(name);
+        // Storages are cached by name, so clearing it here would wipe this selection's own blocks.
+        if (storage == positions) {
+            flush();
+            return this;
+        }
+        storage.clear();
+        copy(positions, storage);
+        RasterSelectionStore.getInstance().flush(storage);
+        return new RasterSelection(storage);
+    }
+
+    public void flush() {
+        if (positions instanceof MapDBVoxelStorage) RasterSelectionStore.getInstance().flush((MapDBVoxelStorage) positions);
+    }
+
+    /**
+     * Frees any temporary disk storage this selection spilled into. The selection is empty afterwards.
+     */
+    public void release() {
+        if (positions instanceof MapDBVoxelStorage && RasterSelectionStore.isTemporary((MapDBVoxelStorage) positions)) {
+            RasterSelectionStore.getInstance().delete((MapDBVoxelStorage) positions);
+            positions = new VoxelSet();
+        }
+    }
+
+    // Every way of adding blocks ends up here, so heap storages never grow far past the threshold.
+    private void spillIfLarge() {
+        if (!(positions instanceof VoxelSet)) return;
+        int threshold = FCConfigManager.getInstance().getRasterSpillThreshold();
+        if (threshold > 0 && positions.size() > threshold) spill();
+    }
+
+    private void spill() {
+        MapDBVoxelStorage storage = RasterSelectionStore.getInstance().createTemporary(this);
+        copy(positions, storage);
+        positions = storage;
+    }
+
+    private static void copy(IVoxelStorage from, IVoxelStorage to) {
+        IVoxelStorage.Cursor cursor = from.cursor();
+        while (cursor.next()) {
+            to.add(cursor.x(), cursor.y(), cursor.z());
         }
     }
 
@@ -144,11 +226,63 @@ public class RasterSelection implements ISelection {
 
     @Override
     public ProcessResult modify(CommandSource source, String arguments) throws CommandException {
-        return null;
+        return ProcessResult.failure();
     }
 
     @Override
     public List<String> modifySuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws CommandException {
-        return null;
+        return ImmutableList.of();
+    }
+
+    /**
+     * Always reads the current storage, and adds through the selection so the spill threshold applies.
+     */
+    private final class PositionsView implements IVoxelStorage {
+
+        @Override
+        public boolean add(int x, int y, int z) {
+            return RasterSelection.this.add(x, y, z);
+        }
+
+        @Override
+        public boolean remove(int x, int y, int z) {
+            return positions.remove(x, y, z);
+        }
+
+        @Override
+        public boolean contains(int x, int y, int z) {
+            return positions.contains(x, y, z);
+        }
+
+        @Override
+        public int size() {
+            return positions.size();
+        }
+
+        @Nullable
+        @Override
+        public BoundingBox3 bounds() {
+            return positions.bounds();
+        }
+
+        @Override
+        public Cursor cursor() {
+            return positions.cursor();
+        }
+
+        @Override
+        public void forEachSection(IntTriConsumer consumer) {
+            positions.forEachSection(consumer);
+        }
+
+        @Override
+        public void clear() {
+            positions.clear();
+        }
+
+        @Override
+        public Iterator<Vector3i> iterator() {
+            return positions.iterator();
+        }
     }
 }
@@ -0,0 +1,221 @@
+package net.foxdenstudio.sponge.foxcore.plugin.selection;
+
+import net.foxdenstudio.sponge.foxcore.plugin.FCConfigManager;
+import net.foxdenstudio.sponge.foxcore.plugin.FoxCoreMain;
+import org.mapdb.DB;
+import org.mapdb.DBException;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the memory mapped MapDB files that large and persistent raster selections are kept in.
+ * <p>
+ * Named storages survive restarts. Their file is transactional, so an unclean stop only loses changes since the last
+ * flush. Temporary storages hold selections that were spilled out of heap. Each one belongs to the selection it was
+ * created for, and is deleted once that selection is released or garbage collected. They live in a second file
+ * that is thrown away on every start, and their names are reused so its catalog doesn't grow with every spill.
+ */
+public final class RasterSelectionStore {
+
+    private static final String FILE_NAME = "foxcore-selections.db";
+    private static final String TEMPORARY_FILE_NAME = "foxcore-selections-tmp.db";
+    private static final String TEMPORARY_PREFIX = "tmp.";
+    private static final String SECTIONS_SUFFIX = ".sections";
+    private static final String SIZE_SUFFIX = ".size";
+
+    private static RasterSelectionStore instance;
+
+    private final Map<String, MapDBVoxelStorage> storages = new HashMap<>();
+    // Temporary storages by name, each watching the object that owns it.
+    private final Map<String, OwnerReference> owners = new HashMap<>();
+    private final ReferenceQueue<Object> collectedOwners = new ReferenceQueue<>();
+    // Names of deleted temporary storages, handed out again before new ones are made.
+    private final Deque<String> freeTemporaryNames = new ArrayDeque<>();
+    private int temporaryCount = 0;
+    private DB db;
+    private DB temporaryDb;
+
+    private RasterSelectionStore() {
+    }
+
+    public static RasterSelectionStore getInstance() {
+        if (instance == null) instance = new RasterSelectionStore();
+        return instance;
+    }
+
+    /**
+     * Opens a named storage, creating it if it doesn't exist yet.
+     */
+    public synchronized MapDBVoxelStorage open(String name) {
+        if (name.startsWith(TEMPORARY_PREFIX)) {
+            throw new IllegalArgumentException("Names starting with \"" + TEMPORARY_PREFIX + "\" are reserved for temporary storages");
+        }
+        MapDBVoxelStorage storage = storages.get(name);
+        if (storage == null) {
+            storage = createStorage(db(), name);
+            storages.put(name, storage);
+        }
+        return storage;
+    }
+
+    /**
+     * Creates a storage that is deleted once the owner is garbage collected, unless it is {@link #delete deleted} before.
+     * The storage must not hold on to its owner.
+     */
+    public synchronized MapDBVoxelStorage createTemporary(Object owner) {
+        deleteCollected();
+        String name = freeTemporaryNames.poll();
+        if (name == null) name = TEMPORARY_PREFIX + temporaryCount++;
+        MapDBVoxelStorage storage = createStorage(temporaryDb(), name);
+        storages.put(name, storage);
+        owners.put(name, new OwnerReference(owner, storage, collectedOwners));
+        return storage;
+    }
+
+    public static boolean isTemporary(MapDBVoxelStorage storage) {
+        return storage.getName().startsWith(TEMPORARY_PREFIX);
+    }
+
+    /**
+     * Empties a storage and forgets it. It must not be used afterwards, and deleting it again does nothing.
+     */
+    public synchronized void delete(MapDBVoxelStorage storage) {
+        // The name may already belong to a newer temporary storage.
+        if (storages.get(storage.getName()) != storage) return;
+        storage.clear();
+        storages.remove(storage.getName());
+        if (owners.remove(storage.getName()) != null) freeTemporaryNames.push(storage.getName());
+    }
+
+    /**
+     * Deletes the temporary storages whose owners have been garbage collected.
+     */
+    public synchronized void deleteCollected() {
+        Reference<?> reference;
+        while ((reference = collectedOwners.poll()) != null) {
+            MapDBVoxelStorage storage = ((OwnerReference) reference).storage;
+            if (owners.get(storage.getName()) == reference) delete(storage);
+        }
+    }
+
+    /**
+     * Writes a storage's changes and commits them, if it is a named one.
+     */
+    public synchronized void flush(MapDBVoxelStorage storage) {
+        storage.flush();
+        if (!isTemporary(storage)) db.commit();
+    }
+
+    public synchronized void flush() {
+        storages.values().forEach(MapDBVoxelStorage::flush);
+        if (db != null) db.commit();
+    }
+
+    @Listener
+    public void onServerStarted(GameStartedServerEvent event) {
+        Sponge.getScheduler().createTaskBuilder()
+                .name("FoxCore raster cleanup")
+                .async()
+                .interval(1, TimeUnit.MINUTES)
+                .execute(this::deleteCollected)
+                .submit(FoxCoreMain.instance());
+    }
+
+    @Listener
+    public synchronized void onServerStopping(GameStoppingServerEvent event) {
+        try {
+            flush();
+            if (db != null) db.close();
+            if (temporaryDb != null) temporaryDb.close();
+        } catch (Exception e) {
+            FoxCoreMain.instance().logger().error("Error closing raster selection storage", e);
+        }
+        db = null;
+        temporaryDb = null;
+        storages.clear();
+        owners.clear();
+        freeTemporaryNames.clear();
+        temporaryCount = 0;
+    }
+
+    private DB db() {
+        if (db == null) {
+            Path file = FoxCoreMain.instance().getConfigDirectory().resolve(FILE_NAME);
+            try {
+                db = makeNamedDB(file);
+            } catch (DBException.DataCorruption e) {
+                // Files written before transactions were enabled can't be recovered after a crash.
+                Path moved = file.resolveSibling(FILE_NAME + ".broken-" + System.currentTimeMillis());
+                FoxCoreMain.instance().logger().error("Raster selection storage is damaged, moving it to \"" + moved + "\" and starting over", e);
+                try {
+                    Files.move(file, moved);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException("Could not move damaged raster selection storage", ex);
+                }
+                db = makeNamedDB(file);
+            }
+        }
+        return db;
+    }
+
+    private DB temporaryDb() {
+        if (temporaryDb == null) {
+            Path file = FoxCoreMain.instance().getConfigDirectory().resolve(TEMPORARY_FILE_NAME);
+            try {
+                // Left over from a crash.
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete old temporary raster selection storage", e);
+            }
+            temporaryDb = DBMaker.fileDB(file.toFile())
+                    .fileMmapEnableIfSupported()
+                    .fileMmapPreclearDisable()
+                    .fileDeleteAfterClose()
+                    .closeOnJvmShutdown()
+                    .make();
+        }
+        return temporaryDb;
+    }
+
+    private static DB makeNamedDB(Path file) {
+        return DBMaker.fileDB(file.toFile())
+                .fileMmapEnableIfSupported()
+                .fileMmapPreclearDisable()
+                .transactionEnable()
+                .closeOnJvmShutdown()
+                .make();
+    }
+
+    private static MapDBVoxelStorage createStorage(DB db, String name) {
+        return new MapDBVoxelStorage(name,
+                db.treeMap(name + SECTIONS_SUFFIX, Serializer.LONG, Serializer.BYTE_ARRAY).createOrOpen(),
+                db.atomicLong(name + SIZE_SUFFIX).createOrOpen(),
+                FCConfigManager.getInstance().getRasterCacheSections());
+    }
+
+    private static final class OwnerReference extends PhantomReference<Object> {
+        final MapDBVoxelStorage storage;
+
+        OwnerReference(Object owner, MapDBVoxelStorage storage, ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            this.storage = storage;
+        }
+    }
+}
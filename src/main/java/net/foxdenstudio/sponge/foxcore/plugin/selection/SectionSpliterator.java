@@ -0,0 +1,97 @@
+package net.foxdenstudio.sponge.foxcore.plugin.selection;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits a selection along its {@link ISelection#forEachSection sections}, so each part covers whole chunk sections.
+ * Boxes are only made as they are reached, see {@link SelectionSections}.
+ * <p>
+ * For cuboids every block in a box is selected, so the size is exact and the spliterator is
+ * {@link #SIZED} and {@link #SUBSIZED}. For anything else blocks are checked with {@code contains},
+ * and the size is only an upper bound.
+ */
+class SectionSpliterator implements Spliterator<Vector3i> {
+
+    private final ISelection selection;
+    private final boolean exact;
+    private final SelectionSections sections;
+    private long index;
+    private final long fence;
+    private long remaining;
+
+    private BoundingBox3 current;
+    private int x, y, z;
+
+    SectionSpliterator(ISelection selection) {
+        this.selection = selection;
+        this.exact = selection instanceof CuboidSelection;
+        this.sections = SelectionSections.of(selection);
+        this.index = 0;
+        this.fence = sections.count();
+        this.remaining = sections.volumeBefore(fence);
+    }
+
+    private SectionSpliterator(SectionSpliterator parent, long index, long fence) {
+        this.selection = parent.selection;
+        this.exact = parent.exact;
+        this.sections = parent.sections;
+        this.index = index;
+        this.fence = fence;
+        this.remaining = sections.volumeBefore(fence) - sections.volumeBefore(index);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Vector3i> action) {
+        while (true) {
+            if (current == null) {
+                if (index >= fence) return false;
+                current = sections.box(index++);
+                x = current.a.getX() - 1;
+                y = current.a.getY();
+                z = current.a.getZ();
+            }
+            if (++x > current.b.getX()) {
+                x = current.a.getX();
+                if (++z > current.b.getZ()) {
+                    z = current.a.getZ();
+                    if (++y > current.b.getY()) {
+                        current = null;
+                        continue;
+                    }
+                }
+            }
+            remaining--;
+            if (exact || selection.contains(x, y, z)) {
+                action.accept(new Vector3i(x, y, z));
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Hands off the first half of the boxes that haven't been started yet.
+     */
+    @Override
+    public Spliterator<Vector3i> trySplit() {
+        long mid = (index + fence) >>> 1;
+        if (mid <= index) return null;
+        SectionSpliterator prefix = new SectionSpliterator(this, index, mid);
+        remaining -= prefix.remaining;
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+        return exact ? DISTINCT | NONNULL | SIZED | SUBSIZED : DISTINCT | NONNULL;
+    }
+}
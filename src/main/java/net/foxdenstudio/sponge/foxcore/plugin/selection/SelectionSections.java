@@ -0,0 +1,131 @@
+package net.foxdenstudio.sponge.foxcore.plugin.selection;
+
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Indexed access to the boxes that {@link ISelection#forEachSection} yields, so they can be split into ranges
+ * without visiting every box first.
+ * <p>
+ * For selections {@link ISelection#isSectionedByBounds() sectioned by their bounds}, each box is worked out from
+ * its index. Anything else, i.e. rasters, has its boxes listed up front, which only covers occupied sections.
+ */
+abstract class SelectionSections {
+
+    static SelectionSections of(ISelection selection) {
+        if (selection.isSectionedByBounds()) {
+            Optional<BoundingBox3> bounds = selection.bounds();
+            return bounds.isPresent() ? new Grid(bounds.get()) : new Listed(ImmutableList.of());
+        }
+        List<BoundingBox3> boxes = new ArrayList<>();
+        selection.forEachSection(boxes::add);
+        return new Listed(boxes);
+    }
+
+    abstract long count();
+
+    abstract BoundingBox3 box(long index);
+
+    /**
+     * @return the total volume of the boxes before the given index.
+     */
+    abstract long volumeBefore(long index);
+
+    /**
+     * Streams the boxes. Parallel streams split on the index range, so no box is made before it is needed.
+     */
+    Stream<BoundingBox3> stream(boolean parallel) {
+        LongStream indices = LongStream.range(0, count());
+        return (parallel ? indices.parallel() : indices).mapToObj(this::box);
+    }
+
+    /**
+     * The sections of a box in x, then z, then y order, same as {@link BoundingBox3#forEachSection}.
+     */
+    private static final class Grid extends SelectionSections {
+        private final BoundingBox3 bounds;
+        private final int sx0, sy0, sz0;
+        private final long nx, nz, count;
+
+        Grid(BoundingBox3 bounds) {
+            this.bounds = bounds;
+            this.sx0 = bounds.a.getX() >> 4;
+            this.sy0 = bounds.a.getY() >> 4;
+            this.sz0 = bounds.a.getZ() >> 4;
+            this.nx = (bounds.b.getX() >> 4) - sx0 + 1;
+            this.nz = (bounds.b.getZ() >> 4) - sz0 + 1;
+            this.count = nx * nz * ((bounds.b.getY() >> 4) - sy0 + 1);
+        }
+
+        @Override
+        long count() {
+            return count;
+        }
+
+        @Override
+        BoundingBox3 box(long index) {
+            final int sx = sx0 + (int) (index % nx);
+            final int sz = sz0 + (int) (index / nx % nz);
+            final int sy = sy0 + (int) (index / (nx * nz));
+            final Vector3i a = bounds.a, b = bounds.b;
+            return new BoundingBox3(
+                    new Vector3i(Math.max(sx << 4, a.getX()), Math.max(sy << 4, a.getY()), Math.max(sz << 4, a.getZ())),
+                    new Vector3i(Math.min((sx << 4) + 15, b.getX()), Math.min((sy << 4) + 15, b.getY()), Math.min((sz << 4) + 15, b.getZ())));
+        }
+
+        @Override
+        long volumeBefore(long index) {
+            final long iy = index / (nx * nz), iz = index / nx % nz, ix = index % nx;
+            final int ax = bounds.a.getX(), ay = bounds.a.getY(), az = bounds.a.getZ();
+            final int bx = bounds.b.getX(), by = bounds.b.getY(), bz = bounds.b.getZ();
+            // Whole layers below, then whole rows of the current layer, then sections of the current row.
+            final long width = bx - ax + 1, depth = bz - az + 1;
+            final long layerHeight = covered(sy0, iy + 1, ay, by) - covered(sy0, iy, ay, by);
+            final long rowDepth = covered(sz0, iz + 1, az, bz) - covered(sz0, iz, az, bz);
+            return covered(sy0, iy, ay, by) * depth * width
+                    + layerHeight * (covered(sz0, iz, az, bz) * width + rowDepth * covered(sx0, ix, ax, bx));
+        }
+
+        /**
+         * @return how many of the blocks from min to max lie in the first n sections starting at s0.
+         */
+        private static long covered(int s0, long n, int min, int max) {
+            return Math.max(0, Math.min((s0 + n) << 4, (long) max + 1) - min);
+        }
+    }
+
+    private static final class Listed extends SelectionSections {
+        private final List<BoundingBox3> boxes;
+        private final long[] volumeBefore;
+
+        Listed(List<BoundingBox3> boxes) {
+            this.boxes = boxes;
+            this.volumeBefore = new long[boxes.size() + 1];
+            for (int i = 0; i < boxes.size(); i++) {
+                volumeBefore[i + 1] = volumeBefore[i] + boxes.get(i).size();
+            }
+        }
+
+        @Override
+        long count() {
+            return boxes.size();
+        }
+
+        @Override
+        BoundingBox3 box(long index) {
+            return boxes.get((int) index);
+        }
+
+        @Override
+        long volumeBefore(long index) {
+            return volumeBefore[(int) index];
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package net.foxdenstudio.sponge.foxcore.plugin.selection;
+
+import com.flowpowered.math.GenericMath;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import net.foxdenstudio.sponge.foxcore.plugin.util.IntTriConsumer;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Boolean algebra over selections.
+ * <p>
+ * Union, intersection, difference and hollow are lazy: they return views whose {@code contains} is evaluated
+ * against the operands, so a tree made only of cuboids never touches a block until it is asked about one.
+ * Cuboids are folded where the result is still a cuboid, e.g. the intersection of two cuboids,
+ * or growing and shrinking a cuboid.
+ * <p>
+ * Growing and shrinking anything else needs the actual blocks, so the operand is materialised into a
+ * {@link RasterSelection} first and then dilated or eroded one axis at a time.
+ * Materialising evaluates the selection's sections in parallel when every operand is safe to read concurrently.
+ * <p>
+ * Views reflect later changes to their operands.
+ */
+public final class Selections {
+
+    private Selections() {
+    }
+
+    public static ISelection union(ISelection a, ISelection b) {
+        if (isKnownEmpty(a)) return b;
+        if (isKnownEmpty(b)) return a;
+        return new Union(a, b);
+    }
+
+    public static ISelection intersect(ISelection a, ISelection b) {
+        if (a instanceof CuboidSelection && b instanceof CuboidSelection) {
+            BoundingBox3 box = ((CuboidSelection) a).boundingBox.intersect(((CuboidSelection) b).boundingBox);
+            return box == null ? new RasterSelection() : new CuboidSelection(box);
+        }
+        return new Intersection(a, b);
+    }
+
+    public static ISelection subtract(ISelection a, ISelection b) {
+        if (isKnownEmpty(b)) return a;
+        return new Difference(a, b);
+    }
+
+    /**
+     * @return only the blocks of the selection that have at least one face exposed.
+     */
+    public static ISelection hollow(ISelection selection) {
+        return new Hollow(selection);
+    }
+
+    /**
+     * Adds every block within the given distance on each axis. Negative amounts shrink instead.
+     */
+    public static ISelection grow(ISelection selection, int amount) {
+        if (amount < 0) return shrink(selection, -amount);
+        if (amount == 0 || isKnownEmpty(selection)) return selection;
+        if (selection instanceof CuboidSelection) {
+            return new CuboidSelection(((CuboidSelection) selection).boundingBox.expand(amount));
+        }
+        if (selection instanceof Union) {
+            // Growing distributes over union, which keeps cuboid operands as cuboids.
+            Union union = (Union) selection;
+            return union(grow(union.a, amount), grow(union.b, amount));
+        }
+        RasterSelection raster = materialize(selection);
+        RasterSelection grown = dilate(raster, amount);
+        if (raster != selection) raster.release();
+        return grown;
+    }
+
+    /**
+     * Removes every block within the given distance of a block outside the selection on each axis.
+     * Negative amounts grow instead.
+     */
+    public static ISelection shrink(ISelection selection, int amount) {
+        if (amount < 0) return grow(selection, -amount);
+        if (amount == 0 || isKnownEmpty(selection)) return selection;
+        if (selection instanceof CuboidSelection) {
+            BoundingBox3 box = ((CuboidSelection) selection).boundingBox.expand(-amount);
+            return box == null ? new RasterSelection() : new CuboidSelection(box);
+        }
+        if (selection instanceof Intersection) {
+            // Shrinking distributes over intersection.
+            Intersection intersection = (Intersection) selection;
+            return intersect(shrink(intersection.a, amount), shrink(intersection.b, amount));
+        }
+        RasterSelection raster = materialize(selection);
+        RasterSelection shrunk = erode(raster, amount);
+        if (raster != selection) raster.release();
+        return shrunk;
+    }
+
+    /**
+     * Evaluates a selection into a raster. Rasters are returned as they are.
+     */
+    public static RasterSelection materialize(ISelection selection) {
+        if (selection instanceof RasterSelection) return (RasterSelection) selection;
+        RasterSelection raster = new RasterSelection();
+        SelectionSections.of(selection).stream(isConcurrentlyReadable(selection))
+                .map(box -> evaluate(selection, box))
+                .filter(section -> section != null)
+                .forEach(section -> {
+                    synchronized (raster) {
+                        section.addTo(raster);
+                    }
+                });
+        return raster;
+    }
+
+    /**
+     * @param box a box within a single section.
+     */
+    @Nullable
+    private static Section evaluate(ISelection selection, BoundingBox3 box) {
+        final int x0 = box.a.getX(), y0 = box.a.getY(), z0 = box.a.getZ();
+        final int x1 = box.b.getX(), y1 = box.b.getY(), z1 = box.b.getZ();
+        long[] bits = null;
+        for (int y = y0; y <= y1; y++) {
+            for (int z = z0; z <= z1; z++) {
+                for (int x = x0; x <= x1; x++) {
+                    if (selection.contains(x, y, z)) {
+                        if (bits == null) bits = new long[64];
+                        int local = VoxelSet.localIndex(x, y, z);
+                        bits[local >>> 6] |= 1L << local;
+                    }
+                }
+            }
+        }
+        return bits == null ? null : new Section(x0 >> 4, y0 >> 4, z0 >> 4, bits);
+    }
+
+    /**
+     * Only checks what's cheap to know. Composites can only tell they are empty by visiting their whole bounds,
+     * so those are treated as not empty unless they have no bounds at all.
+     */
+    private static boolean isKnownEmpty(ISelection selection) {
+        if (!selection.bounds().isPresent()) return true;
+        if (selection instanceof RasterSelection) return selection.size() == 0;
+        return false;
+    }
+
+    /**
+     * Rasters on disk cache sections as they are read, so they can't be read from several threads at once.
+     */
+    private static boolean isConcurrentlyReadable(ISelection selection) {
+        if (selection instanceof CuboidSelection) return true;
+        if (selection instanceof RasterSelection) {
+            return !((RasterSelection) selection).isOnDisk();
+        }
+        if (selection instanceof Composite) {
+            for (ISelection operand : ((Composite) selection).operands()) {
+                if (!isConcurrentlyReadable(operand)) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Passes that aren't the last are released as soon as the next one is done, in case they spilled to disk.
+    private static RasterSelection dilate(RasterSelection raster, int amount) {
+        RasterSelection current = raster;
+        for (int axis = 0; axis < 3; axis++) {
+            RasterSelection next = new RasterSelection();
+            IVoxelStorage.Cursor cursor = current.getPositions().cursor();
+            while (cursor.next()) {
+                int x = cursor.x(), y = cursor.y(), z = cursor.z();
+                for (int i = -amount; i <= amount; i++) {
+                    next.add(axis == 0 ? x + i : x, axis == 1 ? y + i : y, axis == 2 ? z + i : z);
+                }
+            }
+            if (current != raster) current.release();
+            current = next;
+        }
+        return current;
+    }
+
+    private static RasterSelection erode(RasterSelection raster, int amount) {
+        RasterSelection current = raster;
+        for (int axis = 0; axis < 3; axis++) {
+            RasterSelection next = new RasterSelection();
+            IVoxelStorage.Cursor cursor = current.getPositions().cursor();
+            while (cursor.next()) {
+                int x = cursor.x(), y = cursor.y(), z = cursor.z();
+                boolean keep = true;
+                for (int i = -amount; i <= amount && keep; i++) {
+                    keep = current.contains(axis == 0 ? x + i : x, axis == 1 ? y + i : y, axis == 2 ? z + i : z);
+                }
+                if (keep) next.add(x, y, z);
+            }
+            if (current != raster) current.release();
+            current = next;
+        }
+        return current;
+    }
+
+    private static final class Section {
+        final int sx, sy, sz;
+        final long[] bits;
+
+        Section(int sx, int sy, int sz, long[] bits) {
+            this.sx = sx;
+            this.sy = sy;
+            this.sz = sz;
+            this.bits = bits;
+        }
+
+        void addTo(RasterSelection raster) {
+            for (int word = 0; word < bits.length; word++) {
+                long w = bits[word];
+                while (w != 0) {
+                    int local = word << 6 | Long.numberOfTrailingZeros(w);
+                    raster.add(sx << 4 | (local & 15), sy << 4 | (local >>> 8), sz << 4 | (local >>> 4 & 15));
+                    w &= w - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * A lazily evaluated selection over other selections.
+     * Bounds are conservative and may be larger than the blocks actually selected.
+     * Sizes and iteration visit every block in the bounds.
+     */
+    public static abstract class Composite implements ISelection {
+
+        public abstract List<ISelection> operands();
+
+        @Override
+        public Text overview() {
+            Optional<BoundingBox3> bounds = bounds();
+            return bounds.isPresent() ? Text.of(type() + " ", bounds.get()) : Text.of(type());
+        }
+
+        @Override
+        public Optional<Text> details() {
+            return Optional.empty();
+        }
+
+        @Override
+        public int size() {
+            int count = 0;
+            for (Iterator<Vector3i> it = iterator(); it.hasNext(); it.next()) {
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !iterator().hasNext();
+        }
+
+        /**
+         * Composites that don't narrow their sections use the default, which splits their bounds.
+         */
+        @Override
+        public boolean isSectionedByBounds() {
+            return true;
+        }
+
+        @Override
+        public boolean contains(double x, double y, double z) {
+            return contains(GenericMath.floor(x), GenericMath.floor(y), GenericMath.floor(z));
+        }
+
+        @Override
+        public void forEachBlock(IntTriConsumer consumer) {
+            bounds().ifPresent(bounds -> bounds.forEachBlock((x, y, z) -> {
+                if (contains(x, y, z)) consumer.accept(x, y, z);
+            }));
+        }
+
+        @Override
+        public Iterator<Vector3i> iterator() {
+            Optional<BoundingBox3> bounds = bounds();
+            return bounds.isPresent() ? new FilterIterator(bounds.get()) : ImmutableList.<Vector3i>of().iterator();
+        }
+
+        @Override
+        public ProcessResult modify(CommandSource source, String arguments) throws CommandException {
+            return ProcessResult.failure();
+        }
+
+        @Override
+        public List<String> modifySuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws CommandException {
+            return ImmutableList.of();
+        }
+
+        private class FilterIterator implements Iterator<Vector3i> {
+            final Vector3i a, b;
+            int x, y, z;
+            boolean ready = false;
+            boolean done = false;
+
+            FilterIterator(BoundingBox3 bounds) {
+                a = bounds.a;
+                b = bounds.b;
+                x = a.getX() - 1;
+                y = a.getY();
+                z = a.getZ();
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (ready) return true;
+                if (done) return false;
+                while (true) {
+                    if (++x > b.getX()) {
+                        x = a.getX();
+                        if (++z > b.getZ()) {
+                            z = a.getZ();
+                            if (++y > b.getY()) {
+                                done = true;
+                                return false;
+                            }
+                        }
+                    }
+                    if (contains(x, y, z)) return ready = true;
+                }
+            }
+
+            @Override
+            public Vector3i next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return new Vector3i(x, y, z);
+            }
+        }
+    }
+
+    public static final class Union extends Composite {
+        private final ISelection a, b;
+
+        Union(ISelection a, ISelection b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean contains(int x, int y, int z) {
+            return a.contains(x, y, z) || b.contains(x, y, z);
+        }
+
+        @Override
+        public Optional<BoundingBox3> bounds() {
+            Optional<BoundingBox3> boundsA = a.bounds(), boundsB = b.bounds();
+            if (!boundsA.isPresent()) return boundsB;
+            if (!boundsB.isPresent()) return boundsA;
+            return Optional.of(boundsA.get().union(boundsB.get()));
+        }
+
+        @Override
+        public String type() {
+            return "union";
+        }
+
+        @Override
+        public List<ISelection> operands() {
+            return ImmutableList.of(a, b);
+        }
+    }
+
+    public static final class Intersection extends Composite {
+        private final ISelection a, b;
+
+        Intersection(ISelection a, ISelection b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean contains(int x, int y, int z) {
+            return a.contains(x, y, z) && b.contains(x, y, z);
+        }
+
+        @Override
+        public Optional<BoundingBox3> bounds() {
+            Optional<BoundingBox3> boundsA = a.bounds(), boundsB = b.bounds();
+            if (!boundsA.isPresent() || !boundsB.isPresent()) return Optional.empty();
+            return Optional.ofNullable(boundsA.get().intersect(boundsB.get()));
+        }
+
+        @Override
+        public void forEachSection(Consumer<BoundingBox3> consumer) {
+            b.bounds().ifPresent(boundsB -> a.forEachSection(box -> {
+                BoundingBox3 clipped = box.intersect(boundsB);
+                if (clipped != null) consumer.accept(clipped);
+            }));
+        }
+
+        // The sections of a's bounds clipped to b's are the sections of the intersected bounds.
+        @Override
+        public boolean isSectionedByBounds() {
+            return a.isSectionedByBounds();
+        }
+
+        @Override
+        public String type() {
+            return "intersection";
+        }
+
+        @Override
+        public List<ISelection> operands() {
+            return ImmutableList.of(a, b);
+        }
+    }
+
+    public static final class Difference extends Composite {
+        private final ISelection a, b;
+
+        Difference(ISelection a, ISelection b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean contains(int x, int y, int z) {
+            return a.contains(x, y, z) && !b.contains(x, y, z);
+        }
+
+        @Override
+        public Optional<BoundingBox3> bounds() {
+            return a.bounds();
+        }
+
+        @Override
+        public void forEachSection(Consumer<BoundingBox3> consumer) {
+            a.forEachSection(consumer);
+        }
+
+        @Override
+        public boolean isSectionedByBounds() {
+            return a.isSectionedByBounds();
+        }
+
+        @Override
+        public String type() {
+            return "difference";
+        }
+
+        @Override
+        public List<ISelection> operands() {
+            return ImmutableList.of(a, b);
+        }
+    }
+
+    public static final class Hollow extends Composite {
+        private final ISelection selection;
+
+        Hollow(ISelection selection) {
+            this.selection = selection;
+        }
+
+        @Override
+        public boolean contains(int x, int y, int z) {
+            return selection.contains(x, y, z) && !(selection.contains(x - 1, y, z) && selection.contains(x + 1, y, z)
+                    && selection.contains(x, y - 1, z) && selection.contains(x, y + 1, z)
+                    && selection.contains(x, y, z - 1) && selection.contains(x, y, z + 1));
+        }
+
+        @Override
+        public Optional<BoundingBox3> bounds() {
+            return selection.bounds();
+        }
+
+        @Override
+        public void forEachSection(Consumer<BoundingBox3> consumer) {
+            selection.forEachSection(consumer);
+        }
+
+        @Override
+        public boolean isSectionedByBounds() {
+            return selection.isSectionedByBounds();
+        }
+
+        @Override
+        public String type() {
+            return "hollow";
+        }
+
+        @Override
+        public List<ISelection> operands() {
+            return ImmutableList.of(selection);
+        }
+    }
+}
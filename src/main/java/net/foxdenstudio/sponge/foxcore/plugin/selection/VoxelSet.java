@@ -0,0 +1,523 @@
+package net.foxdenstudio.sponge.foxcore.plugin.selection;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import net.foxdenstudio.sponge.foxcore.plugin.util.IntTriConsumer;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A set of block positions, stored by 16x16x16 section.
+ * <p>
+ * A section with few blocks keeps a sorted array of 12 bit local indices and switches to a 4096 bit bitmap
+ * once it fills up, so a solid region costs about one bit per block and a scattered one a few bytes per block.
+ * Sections are kept in an open addressing table keyed by their packed coordinates.
+ * Nothing is boxed and lookups don't allocate.
+ * <p>
+ * Section coordinates are packed into 22 bits for x and z and 20 bits for y,
+ * which covers everything inside the world border.
+ * <p>
+ * Not thread safe, though an unmodified set can be read from several threads at once.
+ * Iterators, cursors and spliterators must not be used after the set is modified.
+ */
+public final class VoxelSet implements IVoxelStorage {
+
+    // Sparse sections are turned into bitmaps above this many blocks, and bitmaps back into arrays at half of it.
+    private static final int SPARSE_LIMIT = 128;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    // Either a short[] of sorted local indices or a long[64] bitmap. Null marks an empty slot.
+    private Object[] sections = new Object[INITIAL_CAPACITY];
+    private int sectionCount = 0;
+    private int size = 0;
+
+    private int minX, minY, minZ, maxX, maxY, maxZ;
+    // Set when a block on the edge of the bounds is removed. The bounds are then recomputed on demand.
+    private boolean boundsStale = false;
+    private BoundingBox3 bounds;
+
+    public VoxelSet() {
+    }
+
+    public VoxelSet(Iterable<Vector3i> positions) {
+        for (Vector3i pos : positions) {
+            add(pos.getX(), pos.getY(), pos.getZ());
+        }
+    }
+
+    @Override
+    public boolean add(int x, int y, int z) {
+        final long key = sectionKey(x >> 4, y >> 4, z >> 4);
+        final int local = localIndex(x, y, z);
+        int slot = slot(key);
+        Object section = sections[slot];
+        if (section == null) {
+            keys[slot] = key;
+            sections[slot] = new short[]{(short) local};
+            if (++sectionCount * 2 > keys.length) rehash(keys.length * 2);
+        } else if (section instanceof long[]) {
+            long[] bits = (long[]) section;
+            if ((bits[local >>> 6] & (1L << local)) != 0) return false;
+            bits[local >>> 6] |= 1L << local;
+        } else {
+            short[] indices = (short[]) section;
+            int index = Arrays.binarySearch(indices, (short) local);
+            if (index >= 0) return false;
+            index = -index - 1;
+            if (indices.length >= SPARSE_LIMIT) {
+                long[] bits = toBitmap(indices);
+                bits[local >>> 6] |= 1L << local;
+                sections[slot] = bits;
+            } else {
+                short[] grown = new short[indices.length + 1];
+                System.arraycopy(indices, 0, grown, 0, index);
+                grown[index] = (short) local;
+                System.arraycopy(indices, index, grown, index + 1, indices.length - index);
+                sections[slot] = grown;
+            }
+        }
+        if (size++ == 0) {
+            minX = maxX = x;
+            minY = maxY = y;
+            minZ = maxZ = z;
+            boundsStale = false;
+        } else {
+            if (x < minX) minX = x;
+            if (y < minY) minY = y;
+            if (z < minZ) minZ = z;
+            if (x > maxX) maxX = x;
+            if (y > maxY) maxY = y;
+            if (z > maxZ) maxZ = z;
+        }
+        bounds = null;
+        return true;
+    }
+
+    public boolean add(Vector3i pos) {
+        return add(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    public boolean remove(int x, int y, int z) {
+        final int slot = slot(sectionKey(x >> 4, y >> 4, z >> 4));
+        final int local = localIndex(x, y, z);
+        Object section = sections[slot];
+        if (section == null) return false;
+        if (section instanceof long[]) {
+            long[] bits = (long[]) section;
+            if ((bits[local >>> 6] & (1L << local)) == 0) return false;
+            bits[local >>> 6] &= ~(1L << local);
+            int count = 0;
+            for (long word : bits) count += Long.bitCount(word);
+            if (count <= SPARSE_LIMIT / 2) sections[slot] = toSparse(bits, count);
+        } else {
+            short[] indices = (short[]) section;
+            int index = Arrays.binarySearch(indices, (short) local);
+            if (index < 0) return false;
+            if (indices.length == 1) {
+                deleteSlot(slot);
+            } else {
+                short[] shrunk = new short[indices.length - 1];
+                System.arraycopy(indices, 0, shrunk, 0, index);
+                System.arraycopy(indices, index + 1, shrunk, index, shrunk.length - index);
+                sections[slot] = shrunk;
+            }
+        }
+        size--;
+        if (x == minX || y == minY || z == minZ || x == maxX || y == maxY || z == maxZ) boundsStale = true;
+        bounds = null;
+        return true;
+    }
+
+    public boolean remove(Vector3i pos) {
+        return remove(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        Object section = sections[slot(sectionKey(x >> 4, y >> 4, z >> 4))];
+        if (section == null) return false;
+        final int local = localIndex(x, y, z);
+        if (section instanceof long[]) {
+            return (((long[]) section)[local >>> 6] & (1L << local)) != 0;
+        } else {
+            return Arrays.binarySearch((short[]) section, (short) local) >= 0;
+        }
+    }
+
+    public boolean contains(Vector3i pos) {
+        return contains(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int sectionCount() {
+        return sectionCount;
+    }
+
+    @Override
+    public void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        sections = new Object[INITIAL_CAPACITY];
+        sectionCount = 0;
+        size = 0;
+        boundsStale = false;
+        bounds = null;
+    }
+
+    @Nullable
+    @Override
+    public BoundingBox3 bounds() {
+        if (size == 0) return null;
+        if (boundsStale) recalculateBounds();
+        if (bounds == null) bounds = new BoundingBox3(new Vector3i(minX, minY, minZ), new Vector3i(maxX, maxY, maxZ));
+        return bounds;
+    }
+
+    @Override
+    public Cursor cursor() {
+        return new SetCursor();
+    }
+
+    @Override
+    public void forEachSection(IntTriConsumer consumer) {
+        for (int slot = 0; slot < sections.length; slot++) {
+            if (sections[slot] != null) {
+                long key = keys[slot];
+                consumer.accept(sectionX(key), sectionY(key), sectionZ(key));
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Vector3i> iterator() {
+        final SetCursor cursor = new SetCursor();
+        return new Iterator<Vector3i>() {
+            boolean ready = false;
+            boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    hasNext = cursor.next();
+                    ready = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Vector3i next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return new Vector3i(cursor.x, cursor.y, cursor.z);
+            }
+        };
+    }
+
+    /**
+     * Splits on ranges of table slots, so each part covers whole sections and walks their blocks directly.
+     * Only the unsplit spliterator knows its exact size.
+     */
+    @Override
+    public Spliterator<Vector3i> spliterator() {
+        return new SlotSpliterator(0, sections.length, size, true);
+    }
+
+    private void recalculateBounds() {
+        SetCursor cursor = new SetCursor();
+        cursor.next();
+        minX = maxX = cursor.x;
+        minY = maxY = cursor.y;
+        minZ = maxZ = cursor.z;
+        while (cursor.next()) {
+            int x = cursor.x, y = cursor.y, z = cursor.z;
+            if (x < minX) minX = x;
+            if (y < minY) minY = y;
+            if (z < minZ) minZ = z;
+            if (x > maxX) maxX = x;
+            if (y > maxY) maxY = y;
+            if (z > maxZ) maxZ = z;
+        }
+        boundsStale = false;
+    }
+
+    /**
+     * @return the slot holding the given key, or the empty slot where it would go.
+     */
+    private int slot(long key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (sections[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldSections = sections;
+        keys = new long[capacity];
+        sections = new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSections[i] != null) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                sections[slot] = oldSections[i];
+            }
+        }
+    }
+
+    /**
+     * Removes a slot and shifts back any following entries that probed past it, so lookups never hit a gap.
+     */
+    private void deleteSlot(int slot) {
+        final int mask = keys.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (sections[next] == null) break;
+            int ideal = hash(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                sections[slot] = sections[next];
+                slot = next;
+            }
+        }
+        keys[slot] = 0;
+        sections[slot] = null;
+        sectionCount--;
+    }
+
+    /**
+     * Encodes a section bitmap as either a list of local indices or the raw bitmap, whichever is smaller.
+     */
+    static byte[] encodeSection(long[] bits) {
+        int count = 0;
+        for (long word : bits) count += Long.bitCount(word);
+        if (count <= SPARSE_LIMIT) {
+            ByteBuffer buffer = ByteBuffer.allocate(count * 2);
+            for (short index : toSparse(bits, count)) buffer.putShort(index);
+            return buffer.array();
+        } else {
+            ByteBuffer buffer = ByteBuffer.allocate(bits.length * 8);
+            for (long word : bits) buffer.putLong(word);
+            return buffer.array();
+        }
+    }
+
+    static long[] decodeSection(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long[] bits = new long[64];
+        if (data.length == bits.length * 8) {
+            for (int i = 0; i < bits.length; i++) bits[i] = buffer.getLong();
+        } else {
+            while (buffer.hasRemaining()) {
+                short index = buffer.getShort();
+                bits[index >>> 6] |= 1L << index;
+            }
+        }
+        return bits;
+    }
+
+    static int localIndex(int x, int y, int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    static long sectionKey(int sx, int sy, int sz) {
+        return ((long) sx & 0x3FFFFFL) << 42 | ((long) sy & 0xFFFFFL) << 22 | ((long) sz & 0x3FFFFFL);
+    }
+
+    static int sectionX(long key) {
+        return (int) (key >> 42);
+    }
+
+    static int sectionY(long key) {
+        return (int) (key << 22 >> 44);
+    }
+
+    static int sectionZ(long key) {
+        return (int) (key << 42 >> 42);
+    }
+
+    private static long[] toBitmap(short[] indices) {
+        long[] bits = new long[64];
+        for (short index : indices) {
+            bits[index >>> 6] |= 1L << index;
+        }
+        return bits;
+    }
+
+    private static short[] toSparse(long[] bits, int count) {
+        short[] indices = new short[count];
+        int i = 0;
+        for (int word = 0; word < bits.length; word++) {
+            long w = bits[word];
+            while (w != 0) {
+                indices[i++] = (short) (word << 6 | Long.numberOfTrailingZeros(w));
+                w &= w - 1;
+            }
+        }
+        return indices;
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private final class SetCursor implements Cursor {
+
+        private int slot;
+        private final int start, end;
+        private int index;
+        private int baseX, baseY, baseZ;
+        private int x, y, z;
+
+        SetCursor() {
+            this(0, sections.length);
+        }
+
+        /**
+         * Walks the sections in the given range of table slots.
+         */
+        SetCursor(int from, int to) {
+            this.slot = from - 1;
+            this.start = from;
+            this.end = to;
+        }
+
+        @Override
+        public boolean next() {
+            if (slot >= end) return false;
+            while (true) {
+                if (slot >= start) {
+                    Object section = sections[slot];
+                    int local = -1;
+                    if (section instanceof long[]) {
+                        local = nextSetBit((long[]) section, index + 1);
+                    } else if (index + 1 < ((short[]) section).length) {
+                        local = ((short[]) section)[index + 1];
+                    }
+                    if (local >= 0) {
+                        index = section instanceof long[] ? local : index + 1;
+                        x = baseX | (local & 15);
+                        z = baseZ | (local >>> 4 & 15);
+                        y = baseY | (local >>> 8);
+                        return true;
+                    }
+                }
+                do {
+                    slot++;
+                } while (slot < end && sections[slot] == null);
+                if (slot >= end) {
+                    slot = end;
+                    return false;
+                }
+                long key = keys[slot];
+                baseX = sectionX(key) << 4;
+                baseY = sectionY(key) << 4;
+                baseZ = sectionZ(key) << 4;
+                index = -1;
+            }
+        }
+
+        @Override
+        public int x() {
+            return x;
+        }
+
+        @Override
+        public int y() {
+            return y;
+        }
+
+        @Override
+        public int z() {
+            return z;
+        }
+
+        private int nextSetBit(long[] bits, int from) {
+            if (from >= 4096) return -1;
+            int word = from >>> 6;
+            long w = bits[word] & (-1L << from);
+            while (true) {
+                if (w != 0) return word << 6 | Long.numberOfTrailingZeros(w);
+                if (++word == bits.length) return -1;
+                w = bits[word];
+            }
+        }
+    }
+
+    private final class SlotSpliterator implements Spliterator<Vector3i> {
+
+        private int from;
+        private final int to;
+        private long estimate;
+        private boolean sized;
+        private SetCursor cursor;
+
+        SlotSpliterator(int from, int to, long estimate, boolean sized) {
+            this.from = from;
+            this.to = to;
+            this.estimate = estimate;
+            this.sized = sized;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Vector3i> action) {
+            if (cursor == null) cursor = new SetCursor(from, to);
+            if (!cursor.next()) return false;
+            action.accept(new Vector3i(cursor.x, cursor.y, cursor.z));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Vector3i> action) {
+            if (cursor == null) cursor = new SetCursor(from, to);
+            while (cursor.next()) {
+                action.accept(new Vector3i(cursor.x, cursor.y, cursor.z));
+            }
+        }
+
+        /**
+         * Hands off the first half of the slots, as long as walking hasn't started.
+         */
+        @Override
+        public Spliterator<Vector3i> trySplit() {
+            final int mid = (from + to) >>> 1;
+            if (cursor != null || mid <= from) return null;
+            SlotSpliterator prefix = new SlotSpliterator(from, mid, estimate / 2, false);
+            from = mid;
+            estimate -= prefix.estimate;
+            sized = false;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return sized ? DISTINCT | NONNULL | SIZED : DISTINCT | NONNULL;
+        }
+    }
+}
@@ -25,31 +25,48 @@
 
 package net.foxdenstudio.sponge.foxcore.plugin.state;
 
-import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
+import com.google.common.collect.ImmutableMap;
+import net.foxdenstudio.sponge.foxcore.plugin.FCConfigManager;
+import net.foxdenstudio.sponge.foxcore.plugin.FoxCoreMain;
+import net.foxdenstudio.sponge.foxcore.plugin.metrics.FCMetrics;
 import net.foxdenstudio.sponge.foxcore.plugin.state.factory.IStateFieldFactory;
+import net.foxdenstudio.sponge.foxcore.plugin.util.AliasIndex;
+import net.foxdenstudio.sponge.foxcore.plugin.util.FCPUtil;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.game.state.GameStartingServerEvent;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.util.GuavaCollectors;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
-import static net.foxdenstudio.sponge.foxcore.plugin.util.Aliases.isIn;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class FCStateManager {
 
     private static FCStateManager instance;
 
-    private final Map<CommandSource, SourceState> stateMap = new CacheMap<>((o, m) -> {
-        if (o instanceof CommandSource) {
-            SourceState state = new SourceState((CommandSource) o);
-            m.put((CommandSource) o, state);
-            return state;
-        }
-        return null;
-    });
-    private Set<StateMapping> stateMappings = new HashSet<>();
+    // Players are keyed by UUID, everything else by identifier, so states don't hold on to stale source objects.
+    private final ConcurrentMap<Object, SourceState> stateMap = new ConcurrentHashMap<>();
+    private final Map<CommandSource, SourceState> stateMapView = new StateMapView();
+    private final AtomicLong createdStates = new AtomicLong();
+    private final AtomicLong evictedStates = new AtomicLong();
+    private final Set<StateMapping> stateMappings = new LinkedHashSet<>();
+    private final AliasIndex<StateMapping> aliasIndex = new AliasIndex<>();
+    private Map<String, StateMapping> idMap = new HashMap<>();
+
+    private FCStateManager() {
+        FCMetrics metrics = FCMetrics.getInstance();
+        metrics.gauge("state.live", this::getLiveStateCount);
+        metrics.gauge("state.created", this::getCreatedStateCount);
+        metrics.gauge("state.evicted", this::getEvictedStateCount);
+    }
 
     public static void init() {
         if (instance == null) instance = new FCStateManager();
@@ -59,23 +76,123 @@ public final class FCStateManager {
         return instance;
     }
 
+    /**
+     * Gets the state of a source, creating it if it doesn't exist yet.
+     * Safe to call from any thread.
+     */
+    public SourceState getState(CommandSource source) {
+        // Touched inside the compute so eviction can't remove the state between the lookup and the touch.
+        return this.stateMap.compute(getKey(source), (key, state) -> {
+            if (state == null) {
+                this.createdStates.incrementAndGet();
+                state = new SourceState(source);
+            }
+            state.touch(source);
+            return state;
+        });
+    }
+
+    public Optional<SourceState> getExistingState(CommandSource source) {
+        return Optional.ofNullable(this.stateMap.get(getKey(source)));
+    }
+
+    public boolean evict(CommandSource source) {
+        if (this.stateMap.remove(getKey(source)) != null) {
+            this.evictedStates.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Evicts the states of sources that haven't been accessed for the given amount of time.
+     * Online players are skipped, since their states are evicted when they disconnect.
+     *
+     * @return the number of evicted states.
+     */
+    public int evictIdle(long timeout, TimeUnit unit) {
+        final long cutoff = System.currentTimeMillis() - unit.toMillis(timeout);
+        final AtomicInteger count = new AtomicInteger();
+        for (Map.Entry<Object, SourceState> entry : this.stateMap.entrySet()) {
+            if (!isIdle(entry.getValue(), cutoff)) continue;
+            // Checked again under the map's lock, since the state may have been fetched in the meantime.
+            this.stateMap.computeIfPresent(entry.getKey(), (key, state) -> {
+                if (!isIdle(state, cutoff)) return state;
+                count.incrementAndGet();
+                return null;
+            });
+        }
+        this.evictedStates.addAndGet(count.get());
+        return count.get();
+    }
+
+    private static boolean isIdle(SourceState state, long cutoff) {
+        CommandSource source = state.getSource();
+        return state.getLastAccess() < cutoff && !(source instanceof Player && ((Player) source).isOnline());
+    }
+
+    public int getLiveStateCount() {
+        return this.stateMap.size();
+    }
+
+    public long getCreatedStateCount() {
+        return this.createdStates.get();
+    }
+
+    public long getEvictedStateCount() {
+        return this.evictedStates.get();
+    }
+
+    /**
+     * Map view of the state store, kept for plugins that still use it.
+     * Getting a missing source creates its state, just like the old cache map did.
+     *
+     * @deprecated use {@link #getState(CommandSource)} instead.
+     */
+    @Deprecated
     public Map<CommandSource, SourceState> getStateMap() {
-        return stateMap;
+        return stateMapView;
     }
 
-    public boolean registerStateFactory(IStateFieldFactory factory, String identifier, String primaryAlias, String... aliases) {
-        for (StateMapping mapping : this.stateMappings) {
-            if (mapping.identifier.equals(identifier)) return false;
-            for (String alias : aliases) {
-                if (isIn(mapping.aliases, alias)) return false;
-            }
+    @Listener
+    public void onServerStarted(GameStartedServerEvent event) {
+        long timeout = FCConfigManager.getInstance().getStateIdleTimeout();
+        if (timeout > 0) {
+            Sponge.getScheduler().createTaskBuilder()
+                    .name("FoxCore state eviction")
+                    .async()
+                    .interval(1, TimeUnit.MINUTES)
+                    .execute(() -> evictIdle(timeout, TimeUnit.MINUTES))
+                    .submit(FoxCoreMain.instance());
         }
-        this.stateMappings.add(new StateMapping(factory, identifier, primaryAlias, aliases));
+    }
+
+    @Listener
+    public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event) {
+        evict(event.getTargetEntity());
+    }
+
+    private static Object getKey(CommandSource source) {
+        return FCPUtil.getSourceKey(source);
+    }
+
+    public boolean registerStateFactory(IStateFieldFactory factory, String identifier, String primaryAlias, String... aliases) {
+        if (this.aliasIndex.isFrozen() || this.idMap.containsKey(identifier)) return false;
+        String[] allAliases = Arrays.copyOf(aliases, aliases.length + 1);
+        allAliases[aliases.length] = primaryAlias;
+        StateMapping mapping = new StateMapping(factory, identifier, primaryAlias, aliases);
+        if (!this.aliasIndex.register(mapping, allAliases)) return false;
+        this.idMap.put(identifier, mapping);
+        this.stateMappings.add(mapping);
         return true;
     }
 
-    public IStateField newStateField(String alias, SourceState sourceState) {
-        StateMapping mapping = getMappingbyAlias(alias);
+    /**
+     * Creates a new state field. The key is looked up as an identifier first, then as an alias.
+     */
+    public IStateField newStateField(String key, SourceState sourceState) {
+        StateMapping mapping = getMappingbyID(key);
+        if (mapping == null) mapping = getMappingbyAlias(key);
         if (mapping != null) {
             return mapping.factory.createStateField(sourceState);
         } else return null;
@@ -89,22 +206,51 @@ public final class FCStateManager {
     }
 
     public List<String> getPrimaryAliases() {
-        String[] array = new String[this.stateMappings.size()];
         return this.stateMappings.stream().map(stateMapping -> stateMapping.primaryAlias).collect(GuavaCollectors.toImmutableList());
     }
 
     private StateMapping getMappingbyID(String identifier) {
-        for (StateMapping mapping : this.stateMappings) {
-            if (mapping.identifier.equals(identifier)) return mapping;
-        }
-        return null;
+        return this.idMap.get(identifier);
     }
 
     private StateMapping getMappingbyAlias(String alias) {
-        for (StateMapping mapping : this.stateMappings) {
-            if (isIn(mapping.aliases, alias)) return mapping;
+        return this.aliasIndex.get(alias);
+    }
+
+    @Listener
+    public void onServerStarting(GameStartingServerEvent event) {
+        this.aliasIndex.freeze();
+        this.idMap = ImmutableMap.copyOf(this.idMap);
+    }
+
+    private class StateMapView extends AbstractMap<CommandSource, SourceState> {
+
+        @Override
+        public SourceState get(Object key) {
+            return key instanceof CommandSource ? getState((CommandSource) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof CommandSource && stateMap.containsKey(getKey((CommandSource) key));
+        }
+
+        @Override
+        public SourceState remove(Object key) {
+            if (!(key instanceof CommandSource)) return null;
+            SourceState state = stateMap.remove(getKey((CommandSource) key));
+            if (state != null) evictedStates.incrementAndGet();
+            return state;
+        }
+
+        @Override
+        public Set<Entry<CommandSource, SourceState>> entrySet() {
+            Set<Entry<CommandSource, SourceState>> entries = new HashSet<>();
+            for (SourceState state : stateMap.values()) {
+                entries.add(new SimpleImmutableEntry<>(state.getSource(), state));
+            }
+            return Collections.unmodifiableSet(entries);
         }
-        return null;
     }
 
     private static class StateMapping {
@@ -27,6 +27,7 @@ package net.foxdenstudio.sponge.foxcore.plugin.state;
 
 import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPositionDeltaPacket;
 import net.foxdenstudio.sponge.foxcore.common.util.FCCUtil;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdParser;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.FlagMapper;
@@ -47,6 +48,7 @@ import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -69,10 +71,30 @@ public class PositionStateField extends ListStateFieldBase<Position> {
         return false;
     };
 
+    // Copy of the list as the client last saw it, or null if the client hasn't been sent anything yet.
+    private List<Position> synced = null;
+
     public PositionStateField(String name, SourceState sourceState) {
         super(name, sourceState);
     }
 
+    /**
+     * Creates the packet that brings the client's copy of the list up to date, and assumes it will be sent.
+     *
+     * @return the packet, or null if the client is already up to date.
+     */
+    public ServerPositionDeltaPacket createSyncPacket() {
+        List<Position> copy = new ArrayList<>(this.list.size());
+        for (Position pos : this.list) {
+            copy.add(new Position(pos, pos.getColor()));
+        }
+        ServerPositionDeltaPacket packet = this.synced == null ?
+                ServerPositionDeltaPacket.snapshot(copy) :
+                ServerPositionDeltaPacket.diff(this.synced, copy);
+        this.synced = copy;
+        return packet;
+    }
+
     @Override
     public Text currentState(CommandSource source) {
         Text.Builder builder = Text.builder();
@@ -28,6 +28,7 @@ package net.foxdenstudio.sponge.foxcore.plugin.state;
 import com.google.common.collect.ImmutableList;
 import net.foxdenstudio.sponge.foxcore.plugin.command.util.ProcessResult;
 import net.foxdenstudio.sponge.foxcore.plugin.selection.ISelection;
+import net.foxdenstudio.sponge.foxcore.plugin.selection.RasterSelection;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.text.Text;
@@ -79,6 +80,7 @@ public class SelectionStateField extends StateFieldBase {
 
     @Override
     public void flush() {
+        release();
         currentSelection = null;
     }
 
@@ -92,6 +94,11 @@ public class SelectionStateField extends StateFieldBase {
     }
 
     public void setCurrentSelection(ISelection currentSelection) {
+        if (currentSelection != this.currentSelection) release();
         this.currentSelection = currentSelection;
     }
+
+    private void release() {
+        if (currentSelection instanceof RasterSelection) ((RasterSelection) currentSelection).release();
+    }
 }
@@ -25,39 +25,36 @@
 
 package net.foxdenstudio.sponge.foxcore.plugin.state;
 
-import net.foxdenstudio.sponge.foxcore.common.util.CacheMap;
-import net.foxdenstudio.sponge.foxcore.plugin.command.CommandHUD;
+import com.google.common.collect.ImmutableList;
+import net.foxdenstudio.sponge.foxcore.common.util.LoadingCacheMap;
+import net.foxdenstudio.sponge.foxcore.plugin.FoxCoreMain;
+import net.foxdenstudio.sponge.foxcore.plugin.scoreboard.FoxHudCard;
+import net.foxdenstudio.sponge.foxcore.plugin.scoreboard.FoxScoreboard;
+import net.foxdenstudio.sponge.foxcore.plugin.scoreboard.FoxScoreboardManager;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.scoreboard.Score;
-import org.spongepowered.api.scoreboard.Scoreboard;
-import org.spongepowered.api.scoreboard.critieria.Criteria;
-import org.spongepowered.api.scoreboard.displayslot.DisplaySlots;
-import org.spongepowered.api.scoreboard.objective.Objective;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class SourceState {
 
-    private CommandSource source;
+    private volatile CommandSource source;
+    private volatile long lastAccess = System.currentTimeMillis();
 
-    private Map<String, IStateField> state = new CacheMap<>((key, map) -> {
-        if (key instanceof String) {
-            IStateField field = FCStateManager.instance().newStateField((String) key, this);
-            if (field != null) {
-                map.put((String) key, field);
-                return field;
-            }
-        }
-        return null;
-    });
+    // The HUD is kept for the life of the state so updates only send the lines that changed. Main thread only.
+    private FoxScoreboard hud;
+    private Player hudPlayer;
+
+    private Map<String, IStateField> state = LoadingCacheMap.builder()
+            .<String, IStateField>build(key -> FCStateManager.instance().newStateField(key, this));
 
     public SourceState(CommandSource source) {
         this.source = source;
@@ -120,66 +117,118 @@ public class SourceState {
         return source;
     }
 
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    // Players get a new source object every time they log in, so always keep the latest one.
+    void touch(CommandSource source) {
+        this.source = source;
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Marks the HUD as out of date. Its lines are snapshotted on the next tick and laid out off the main thread,
+     * so any number of calls in the same tick only cause one update. Calls from other threads are moved to the main thread.
+     */
     public void updateScoreboard() {
-        if (source instanceof Player && CommandHUD.instance().getIsHUDEnabled().get(source)) {
-            Scoreboard scoreboard = Scoreboard.builder().build();
-            Objective objective = Objective.builder().displayName(Text.of(TextColors.GOLD, "    Foxguard State    ")).name("foxguardstate").criterion(Criteria.DUMMY).build();
-            scoreboard.addObjective(objective);
-            Map<IStateField, List<Text>> stateText = new HashMap<>();
-            this.state.values().stream().filter(IStateField::showScoreboard).forEach(field -> stateText.put(field, field.getScoreboardText()));
-            int entries = stateText.values().stream().mapToInt(List::size).sum();
-            int available = 15 - stateText.size();
-            if (available < 1) {
-                int index = 15;
-                for (IStateField field : stateText.keySet()) {
-                    Score score = objective.getOrCreateScore(field.getScoreboardTitle().orElse(Text.of(TextColors.GREEN, field.getName())));
-                    score.setScore(index--);
-                    if (index < 1) break;
-                }
-            } else if (entries > available) {
-                Map<IStateField, Double> score = new HashMap<>();
-                for (Map.Entry<IStateField, List<Text>> entry : stateText.entrySet()) {
-                    score.put(entry.getKey(), ((double) entry.getValue().size()) * available / entries);
-                }
-                Map<IStateField, Integer> count = new HashMap<>();
-                for (Map.Entry<IStateField, Double> entry : score.entrySet()) {
-                    count.put(entry.getKey(), (int) Math.floor(entry.getValue()));
-                    entry.setValue(entry.getValue() % 1);
-                }
-                int left = available - count.values().stream().mapToInt(Integer::intValue).sum();
-                List<IStateField> priorityList = score.keySet().stream().sorted((o1, o2) -> score.get(o2).compareTo(score.get(o1))).collect(Collectors.toList());
-                for (int i = 0; i < left; i++) {
-                    IStateField field = priorityList.get(i);
-                    count.put(field, count.get(field) + 1);
-                }
-                int index = 15;
-                for (Map.Entry<IStateField, List<Text>> entry : stateText.entrySet()) {
-                    Score fieldScore = objective.getOrCreateScore(entry.getKey().getScoreboardTitle().orElse(Text.of(TextColors.GREEN, entry.getKey().getName())));
-                    fieldScore.setScore(index--);
-                    final int end = entry.getKey().prioritizeLast() ? entry.getValue().size() : count.get(entry.getKey());
-                    for (int i = (entry.getKey().prioritizeLast() ? entry.getValue().size() - count.get(entry.getKey()) : 0); i < end; i++) {
-                        Score lineScore = objective.getOrCreateScore(entry.getValue().get(i));
-                        lineScore.setScore(index--);
-                    }
-                }
-            } else {
-                int index = entries + (int) (stateText.values().stream().filter(list -> list.size() > 0).count());
-                for (Map.Entry<IStateField, List<Text>> entry : stateText.entrySet()) {
-                    Score fieldScore = objective.getOrCreateScore(entry.getKey().getScoreboardTitle().orElse(Text.of(TextColors.GREEN, entry.getKey().getName())));
-                    fieldScore.setScore(index--);
-                    for (Text line : entry.getValue()) {
-                        Score lineScore = objective.getOrCreateScore(line);
-                        lineScore.setScore(index--);
-                    }
+        if (!(source instanceof Player)) return;
+        if (!Sponge.getServer().isMainThread()) {
+            Sponge.getScheduler().createTaskBuilder().execute(this::updateScoreboard).submit(FoxCoreMain.instance());
+            return;
+        }
+        Player player = (Player) source;
+        if (this.hud == null) {
+            this.hud = new FoxScoreboard();
+            this.hud.addCard(new StateHudCard());
+        }
+        if (this.hudPlayer != player) {
+            FoxScoreboardManager.getInstance().display(player, this.hud);
+            this.hudPlayer = player;
+        } else {
+            this.hud.invalidate();
+        }
+    }
+
+    /**
+     * Lays out the visible state fields into at most 15 sidebar lines.
+     */
+    private static List<Text> layoutScoreboard(List<FieldLines> fields) {
+        List<Text> lines = new ArrayList<>();
+        int entries = fields.stream().mapToInt(field -> field.lines.size()).sum();
+        int available = 15 - fields.size();
+        if (available < 1) {
+            for (FieldLines field : fields) {
+                lines.add(field.title);
+                if (lines.size() >= 15) break;
+            }
+        } else if (entries > available) {
+            int[] count = new int[fields.size()];
+            double[] remainder = new double[fields.size()];
+            int left = available;
+            for (int i = 0; i < fields.size(); i++) {
+                double score = ((double) fields.get(i).lines.size()) * available / entries;
+                count[i] = (int) Math.floor(score);
+                remainder[i] = score % 1;
+                left -= count[i];
+            }
+            List<Integer> priorityList = IntStream.range(0, fields.size()).boxed()
+                    .sorted((o1, o2) -> Double.compare(remainder[o2], remainder[o1]))
+                    .collect(Collectors.toList());
+            for (int i = 0; i < left; i++) {
+                count[priorityList.get(i)]++;
+            }
+            for (int i = 0; i < fields.size(); i++) {
+                FieldLines field = fields.get(i);
+                lines.add(field.title);
+                final int end = field.prioritizeLast ? field.lines.size() : count[i];
+                for (int j = (field.prioritizeLast ? field.lines.size() - count[i] : 0); j < end; j++) {
+                    lines.add(field.lines.get(j));
                 }
             }
-            scoreboard.updateDisplaySlot(objective, DisplaySlots.SIDEBAR);
-            Optional<Scoreboard> serverScoreboard = Sponge.getServer().getServerScoreboard();
-            if (objective.getScores().size() == 0 && serverScoreboard.isPresent()) {
-                ((Player) source).setScoreboard(serverScoreboard.get());
-            } else {
-                ((Player) source).setScoreboard(scoreboard);
+        } else {
+            for (FieldLines field : fields) {
+                lines.add(field.title);
+                lines.addAll(field.lines);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * What a state field shows on the HUD, copied on the main thread.
+     */
+    private static final class FieldLines {
+        final Text title;
+        final List<Text> lines;
+        final boolean prioritizeLast;
+
+        FieldLines(IStateField field) {
+            this.title = field.getScoreboardTitle().orElse(Text.of(TextColors.GREEN, field.getName()));
+            this.lines = ImmutableList.copyOf(field.getScoreboardText());
+            this.prioritizeLast = field.prioritizeLast();
+        }
+    }
+
+    private class StateHudCard extends FoxHudCard<List<FieldLines>> {
+
+        @Override
+        public Text getTitle() {
+            return Text.of(TextColors.GOLD, "    Foxguard State    ");
+        }
+
+        @Override
+        protected List<FieldLines> snapshot() {
+            ImmutableList.Builder<FieldLines> fields = ImmutableList.builder();
+            for (IStateField field : state.values()) {
+                if (field.showScoreboard()) fields.add(new FieldLines(field));
             }
+            return fields.build();
+        }
+
+        @Override
+        protected List<Text> layout(List<FieldLines> snapshot) {
+            return layoutScoreboard(snapshot);
         }
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.util;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Case-insensitive lookup from aliases to values.
+ * <p>
+ * Aliases are lowercased once when they are registered, so a lookup is a single hash probe
+ * for lowercase input, and two for anything else.
+ * Registration fails if any alias is already taken, and once the index is frozen it can't be changed at all.
+ *
+ * @param <T> the value type
+ */
+public class AliasIndex<T> {
+
+    private Map<String, T> index = new HashMap<>();
+    private boolean frozen = false;
+
+    /**
+     * Maps every given alias to the value.
+     * Nothing is added if the index is frozen or if any of the aliases is already registered.
+     *
+     * @return whether the aliases were added.
+     */
+    public boolean register(T value, String... aliases) {
+        if (frozen) return false;
+        String[] keys = new String[aliases.length];
+        for (int i = 0; i < aliases.length; i++) {
+            keys[i] = normalize(aliases[i]);
+            if (keys[i].isEmpty() || this.index.containsKey(keys[i])) return false;
+        }
+        for (String key : keys) {
+            this.index.putIfAbsent(key, value);
+        }
+        return true;
+    }
+
+    public T get(String alias) {
+        if (alias == null || alias.isEmpty()) return null;
+        T value = this.index.get(alias);
+        if (value == null) {
+            String key = normalize(alias);
+            if (!key.equals(alias)) value = this.index.get(key);
+        }
+        return value;
+    }
+
+    public boolean contains(String alias) {
+        return get(alias) != null;
+    }
+
+    public int size() {
+        return this.index.size();
+    }
+
+    public void freeze() {
+        if (!frozen) {
+            this.index = ImmutableMap.copyOf(this.index);
+            this.frozen = true;
+        }
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private static String normalize(String alias) {
+        return alias.toLowerCase(Locale.ROOT);
+    }
+}
@@ -29,8 +29,10 @@ import com.flowpowered.math.vector.Vector3d;
 import com.flowpowered.math.vector.Vector3i;
 import org.spongepowered.api.world.Location;
 
+import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.util.Iterator;
+import java.util.function.Consumer;
 
 public class BoundingBox3 implements Serializable, Iterable<Vector3i> {
 
@@ -88,8 +90,70 @@ public class BoundingBox3 implements Serializable, Iterable<Vector3i> {
                 y >= this.a.getY() && y < this.b.getY() + 1);
     }
 
+    /**
+     * @return the box covering both boxes.
+     */
+    public BoundingBox3 union(BoundingBox3 other) {
+        return new BoundingBox3(this.a.min(other.a), this.b.max(other.b));
+    }
+
+    /**
+     * @return the overlap of both boxes, or null if they don't overlap.
+     */
+    @Nullable
+    public BoundingBox3 intersect(BoundingBox3 other) {
+        Vector3i min = this.a.max(other.a);
+        Vector3i max = this.b.min(other.b);
+        if (min.getX() > max.getX() || min.getY() > max.getY() || min.getZ() > max.getZ()) return null;
+        return new BoundingBox3(min, max);
+    }
+
+    /**
+     * Grows the box by the given number of blocks on every side. Negative amounts shrink it.
+     *
+     * @return the new box, or null if it shrank to nothing.
+     */
+    @Nullable
+    public BoundingBox3 expand(int amount) {
+        Vector3i min = this.a.sub(amount, amount, amount);
+        Vector3i max = this.b.add(amount, amount, amount);
+        if (min.getX() > max.getX() || min.getY() > max.getY() || min.getZ() > max.getZ()) return null;
+        return new BoundingBox3(min, max);
+    }
+
     public long size() {
-        return (b.getX() - a.getX() + 1) * (b.getY() - a.getY() + 1) * (b.getY() - a.getY() + 1);
+        return (long) (b.getX() - a.getX() + 1) * (b.getY() - a.getY() + 1) * (b.getZ() - a.getZ() + 1);
+    }
+
+    /**
+     * Visits every block in the box in x, then z, then y order without allocating.
+     */
+    public void forEachBlock(IntTriConsumer consumer) {
+        final int ax = a.getX(), ay = a.getY(), az = a.getZ();
+        final int bx = b.getX(), by = b.getY(), bz = b.getZ();
+        for (int y = ay; y <= by; y++) {
+            for (int z = az; z <= bz; z++) {
+                for (int x = ax; x <= bx; x++) {
+                    consumer.accept(x, y, z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the box along the 16x16x16 chunk section grid.
+     * Each part lies within a single section, and together they cover the box exactly.
+     */
+    public void forEachSection(Consumer<BoundingBox3> consumer) {
+        for (int sy = a.getY() >> 4; sy <= b.getY() >> 4; sy++) {
+            for (int sz = a.getZ() >> 4; sz <= b.getZ() >> 4; sz++) {
+                for (int sx = a.getX() >> 4; sx <= b.getX() >> 4; sx++) {
+                    consumer.accept(new BoundingBox3(
+                            new Vector3i(Math.max(sx << 4, a.getX()), Math.max(sy << 4, a.getY()), Math.max(sz << 4, a.getZ())),
+                            new Vector3i(Math.min((sx << 4) + 15, b.getX()), Math.min((sy << 4) + 15, b.getY()), Math.min((sz << 4) + 15, b.getZ()))));
+                }
+            }
+        }
     }
 
     @Override
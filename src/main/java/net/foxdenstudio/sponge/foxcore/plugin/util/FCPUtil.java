@@ -1,7 +1,9 @@
 package net.foxdenstudio.sponge.foxcore.plugin.util;
 
+import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPositionDeltaPacket;
 import net.foxdenstudio.sponge.foxcore.common.network.server.packet.ServerPositionPacket;
 import net.foxdenstudio.sponge.foxcore.common.util.FCCUtil;
+import net.foxdenstudio.sponge.foxcore.plugin.FCServerNetworkManager;
 import net.foxdenstudio.sponge.foxcore.plugin.FoxCoreMain;
 import net.foxdenstudio.sponge.foxcore.plugin.state.FCStateManager;
 import net.foxdenstudio.sponge.foxcore.plugin.state.PositionStateField;
@@ -24,6 +26,7 @@ import org.spongepowered.api.text.format.TextColor;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.text.format.TextStyle;
 import org.spongepowered.api.text.format.TextStyles;
+import org.spongepowered.api.util.Identifiable;
 import org.spongepowered.api.util.Tristate;
 
 import java.io.IOException;
@@ -95,6 +98,15 @@ public class FCPUtil {
         return false;
     }
 
+    /**
+     * Key for maps of per-source data. Players are keyed by UUID, and other sources by identifier.
+     * Minecraft makes a new player entity on respawn and dimension change, so entries must not be keyed by the entity.
+     */
+    public static Object getSourceKey(CommandSource source) {
+        if (source instanceof Identifiable) return ((Identifiable) source).getUniqueId();
+        else return source.getIdentifier();
+    }
+
     public static boolean hasColor(Text text) {
         if (text.getColor() != TextColors.NONE && text.getColor() != TextColors.RESET) return true;
         for (Text child : text.getChildren()) {
@@ -107,11 +119,18 @@ public class FCPUtil {
 
     @SuppressWarnings("unchecked")
     public static List<Position> getPositions(CommandSource source) {
-        return ((PositionStateField) FCStateManager.instance().getStateMap().get(source).getOrCreate(PositionStateField.ID).get()).getList();
+        return ((PositionStateField) FCStateManager.instance().getState(source).getOrCreate(PositionStateField.ID).get()).getList();
     }
 
     public static void updatePositions(Player player) {
-        FoxCoreMain.instance().getFoxcoreNetworkChannel().sendPacket(player, new ServerPositionPacket(getPositions(player)));
+        FCServerNetworkManager.ServerChannel channel = FoxCoreMain.instance().getFoxcoreNetworkChannel();
+        if (channel.networkManager.canReceive(player, ServerPositionDeltaPacket.ID)) {
+            PositionStateField field = (PositionStateField) FCStateManager.instance().getState(player).getOrCreate(PositionStateField.ID).get();
+            ServerPositionDeltaPacket packet = field.createSyncPacket();
+            if (packet != null) channel.sendPacket(player, packet);
+        } else {
+            channel.sendPacket(player, new ServerPositionPacket(getPositions(player)));
+        }
     }
 
     public static Optional<TextColor> textColorFromName(String name) {
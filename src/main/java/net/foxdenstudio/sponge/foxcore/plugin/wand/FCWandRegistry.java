@@ -1,7 +1,10 @@
 package net.foxdenstudio.sponge.foxcore.plugin.wand;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import net.foxdenstudio.sponge.foxcore.plugin.util.Aliases;
+import net.foxdenstudio.sponge.foxcore.plugin.util.AliasIndex;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.game.state.GameStartingServerEvent;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -15,6 +18,7 @@ public class FCWandRegistry {
     private static final FCWandRegistry instance = new FCWandRegistry();
 
     private Map<String, IWandFactory> wandBuilders = new HashMap<>();
+    private final AliasIndex<IWandFactory> aliasIndex = new AliasIndex<>();
     private Map<Integer, IWand> wandCache = new HashMap<>();
 
     private FCWandRegistry() {
@@ -25,7 +29,7 @@ public class FCWandRegistry {
     }
 
     public boolean registerBuilder(String key, IWandFactory value) {
-        if (!wandBuilders.containsKey(key)) {
+        if (!wandBuilders.containsKey(key) && aliasIndex.register(value, value.aliases())) {
             wandBuilders.put(key, value);
             return true;
         } else return false;
@@ -36,10 +40,13 @@ public class FCWandRegistry {
     }
 
     public IWandFactory getBuilderFromAlias(String alias) {
-        for (IWandFactory factory : wandBuilders.values()) {
-            if (Aliases.isIn(factory.aliases(), alias)) return factory;
-        }
-        return null;
+        return aliasIndex.get(alias);
+    }
+
+    @Listener
+    public void onServerStarting(GameStartingServerEvent event) {
+        aliasIndex.freeze();
+        wandBuilders = ImmutableMap.copyOf(wandBuilders);
     }
 
     public Set<String> getTypes() {
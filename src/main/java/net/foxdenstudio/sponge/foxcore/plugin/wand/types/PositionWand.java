@@ -78,7 +78,7 @@ public class PositionWand implements IWand {
             positions.remove(positions.lastIndexOf(pos));
             player.sendMessage(Text.of(TextColors.GREEN, "Successfully removed position (" + pos.getX() + ", " + pos.getY() + ", " + pos.getZ() + ")!"));
             FCPUtil.updatePositions(player);
-            FCStateManager.instance().getStateMap().get(player).updateScoreboard();
+            FCStateManager.instance().getState(player).updateScoreboard();
         }
         return true;
     }
@@ -90,7 +90,7 @@ public class PositionWand implements IWand {
         positions.add(new Position(pos, rainbow ? Position.Color.randomColor() : color));
         player.sendMessage(Text.of(TextColors.GREEN, "Successfully added position (" + pos.getX() + ", " + pos.getY() + ", " + pos.getZ() + ")!"));
         FCPUtil.updatePositions(player);
-        FCStateManager.instance().getStateMap().get(player).updateScoreboard();
+        FCStateManager.instance().getState(player).updateScoreboard();
         return true;
     }
 
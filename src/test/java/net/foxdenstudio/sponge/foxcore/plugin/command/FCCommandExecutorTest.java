@@ -0,0 +1,213 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.util.Identifiable;
+
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks submitting, cancelling and timing out async commands, with plain executors standing in for the scheduler.
+ */
+public class FCCommandExecutorTest {
+
+    private static final UUID PLAYER = UUID.randomUUID();
+
+    private ExecutorService pool;
+    private ScheduledThreadPoolExecutor timer;
+    private ExecutorService mainThread;
+    private Thread main;
+    private final AtomicInteger messages = new AtomicInteger();
+    private final AtomicInteger wrongThread = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final Consumer<CommandException> noErrors = e -> errors.incrementAndGet();
+
+    @Before
+    public void setUp() throws Exception {
+        pool = Executors.newFixedThreadPool(2);
+        timer = new ScheduledThreadPoolExecutor(1);
+        timer.setRemoveOnCancelPolicy(true);
+        mainThread = Executors.newSingleThreadExecutor();
+        main = mainThread.submit(Thread::currentThread).get();
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+        timer.shutdownNow();
+        mainThread.shutdownNow();
+        assertEquals("messages sent off the main thread", 0, wrongThread.get());
+        assertEquals("unexpected command errors", 0, errors.get());
+    }
+
+    @Test
+    public void submitCompletesWithResult() throws Exception {
+        FCCommandExecutor executor = executor(0);
+        CommandResult result = CommandResult.empty();
+        AsyncCommandResult async = executor.submit(player(), "test", () -> result, noErrors);
+        assertTrue(async.getFuture().get(5, TimeUnit.SECONDS) == result);
+        awaitIdle(executor);
+        assertEquals(0, messages.get());
+    }
+
+    @Test
+    public void oneCommandPerSource() throws Exception {
+        FCCommandExecutor executor = executor(0);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(player(), "first", () -> {
+            release.await();
+            return CommandResult.empty();
+        }, noErrors);
+        try {
+            // A respawned player is a new entity with the same UUID.
+            executor.submit(player(), "second", CommandResult::empty, noErrors);
+            fail("second command was accepted");
+        } catch (CommandException expected) {
+        }
+        release.countDown();
+        awaitIdle(executor);
+        executor.submit(player(), "third", CommandResult::empty, noErrors).getFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void cancelInterruptsCommand() throws Exception {
+        FCCommandExecutor executor = executor(0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AsyncCommandResult async = executor.submit(player(), "test", () -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return CommandResult.empty();
+        }, noErrors);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals("test", executor.cancel(player()).orElse(null));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(async.getFuture().isCancelled());
+        assertFalse(executor.cancel(player()).isPresent());
+        awaitIdle(executor);
+        awaitMessages(1);
+    }
+
+    @Test
+    public void timeoutCancelsCommand() throws Exception {
+        FCCommandExecutor executor = executor(50);
+        AsyncCommandResult async = executor.submit(player(), "test", () -> {
+            while (true) FCCommandExecutor.checkCancelled();
+        }, noErrors);
+        try {
+            async.getFuture().get(5, TimeUnit.SECONDS);
+            fail("command was not cancelled");
+        } catch (CancellationException expected) {
+        }
+        awaitIdle(executor);
+        awaitMessages(1);
+    }
+
+    @Test
+    public void finishedCommandStopsTimeout() throws Exception {
+        FCCommandExecutor executor = executor(TimeUnit.MINUTES.toMillis(1));
+        executor.submit(player(), "test", CommandResult::empty, noErrors).getFuture().get(5, TimeUnit.SECONDS);
+        awaitIdle(executor);
+        assertEquals(0, timer.getQueue().size());
+    }
+
+    @Test
+    public void commandErrorsAreReportedOnMainThread() throws Exception {
+        FCCommandExecutor executor = executor(0);
+        CountDownLatch reported = new CountDownLatch(1);
+        executor.submit(player(), "test", () -> {
+            throw new CommandException(Text.of("failed"));
+        }, e -> {
+            if (Thread.currentThread() == main) reported.countDown();
+        });
+        assertTrue(reported.await(5, TimeUnit.SECONDS));
+    }
+
+    private FCCommandExecutor executor(long timeoutMillis) {
+        return new FCCommandExecutor(pool, timer, mainThread, timeoutMillis);
+    }
+
+    private CommandSource player() {
+        return (CommandSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{CommandSource.class, Identifiable.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getUniqueId":
+                            return PLAYER;
+                        case "getName":
+                        case "getIdentifier":
+                            return "tester";
+                        case "sendMessage":
+                            if (Thread.currentThread() != main) wrongThread.incrementAndGet();
+                            messages.incrementAndGet();
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static void awaitIdle(FCCommandExecutor executor) throws InterruptedException {
+        for (int i = 0; i < 500 && executor.getRunningCount() > 0; i++) Thread.sleep(10);
+        assertEquals(0, executor.getRunningCount());
+    }
+
+    private void awaitMessages(int count) throws Exception {
+        // Anything queued on the main thread before this has run once this returns.
+        mainThread.submit(() -> {
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(count, messages.get());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdTokenizerTest.randomInput;
+import static net.foxdenstudio.sponge.foxcore.plugin.command.util.AdvCmdTokenizerTest.tokens;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that reusing an earlier {@link AdvCmdTokenizer} gives the same tokens as tokenizing from scratch.
+ */
+public class AdvCmdTokenizerReuseTest {
+
+    private static final int ITERATIONS = 200000;
+
+    @Test
+    public void tokenizeFromMatchesTokenize() {
+        Random random = new Random(3);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String old = randomInput(random, 24);
+            String input = old.substring(0, random.nextInt(old.length() + 1)) + randomInput(random, 8);
+            assertSameTokens(old + " -> " + input, AdvCmdTokenizer.tokenize(input),
+                    AdvCmdTokenizer.tokenizeFrom(AdvCmdTokenizer.tokenize(old), input));
+        }
+    }
+
+    // Tab completion feeds each result into the next keystroke, including backspaces.
+    @Test
+    public void tokenizeFromMatchesTokenizeWhileTyping() {
+        Random random = new Random(4);
+        for (int i = 0; i < ITERATIONS / 20; i++) {
+            String input = "";
+            AdvCmdTokenizer tokenizer = AdvCmdTokenizer.tokenize(input);
+            for (int key = 0; key < 20; key++) {
+                String next = random.nextInt(4) == 0 && !input.isEmpty()
+                        ? input.substring(0, input.length() - 1)
+                        : input + randomInput(random, 1);
+                tokenizer = AdvCmdTokenizer.tokenizeFrom(tokenizer, next);
+                assertSameTokens(input + " -> " + next, AdvCmdTokenizer.tokenize(next), tokenizer);
+                input = next;
+            }
+        }
+    }
+
+    @Test
+    public void tokenizeSuffixMatchesTokenize() {
+        Random random = new Random(5);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String input = randomInput(random, 24);
+            AdvCmdTokenizer previous = AdvCmdTokenizer.tokenize(input);
+            int offset = random.nextInt(input.length() + 1);
+            // Prefer offsets the dispatcher would actually pass, at the start of a token.
+            if (previous.count() > 0 && random.nextBoolean()) {
+                offset = previous.start(random.nextInt(previous.count()));
+            }
+            String suffix = input.substring(offset);
+            AdvCmdTokenizer tokenizer = AdvCmdTokenizer.tokenizeSuffix(previous, suffix);
+            String message = input + " @ " + offset;
+            if (previous.isReusable() && startsToken(previous, offset)) {
+                assertNotNull(message, tokenizer);
+            }
+            if (tokenizer != null) {
+                assertSameTokens(message, AdvCmdTokenizer.tokenize(suffix), tokenizer);
+            }
+        }
+    }
+
+    private static boolean startsToken(AdvCmdTokenizer tokenizer, int offset) {
+        if (offset == tokenizer.getInput().length()) return true;
+        for (int i = 0; i < tokenizer.count(); i++) {
+            if (tokenizer.start(i) == offset) return true;
+        }
+        return false;
+    }
+
+    private static void assertSameTokens(String message, AdvCmdTokenizer expected, AdvCmdTokenizer actual) {
+        assertEquals(message, expected.getInput(), actual.getInput());
+        assertEquals(message, tokens(expected), tokens(actual));
+        assertEquals(message, expected.getUnclosedQuote(), actual.getUnclosedQuote());
+        assertEquals(message, expected.isReusable(), actual.isReusable());
+    }
+}
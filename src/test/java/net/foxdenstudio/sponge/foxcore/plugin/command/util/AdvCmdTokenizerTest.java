@@ -0,0 +1,109 @@
+/*
+ * This file is part of FoxCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) gravityfox - https://gravityfox.net/
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.foxdenstudio.sponge.foxcore.plugin.command.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link AdvCmdTokenizer} against the argument regex that {@link AdvCmdParser} used before it.
+ */
+public class AdvCmdTokenizerTest {
+
+    private static final Pattern ARGUMENT_PATTERN = Pattern.compile("(?:--[\\w-]*[:=])?([\"'])(?:\\\\.|[^\\\\])*?\\1|(?:\\\\.|[^\"'\\s])+");
+    private static final Pattern QUOTE_PATTERN = Pattern.compile("[\"']");
+
+    // Weighted towards the characters the tokenizer treats specially.
+    private static final char[] ALPHABET = {
+            'a', 'b', 'a', '1', '_', '-', '-', '-', ':', '=', '"', '"', '\'', '\'', '\\', '\\',
+            ' ', ' ', ' ', '\t', '\n', '\r', '\u0085', ' ', '>', '\u00e9'
+    };
+
+    private static final int ITERATIONS = 200000;
+
+    @Test
+    public void matchesRegexTokens() {
+        Random random = new Random(1);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String input = randomInput(random, 24);
+            assertEquals(input, regexTokens(input), tokens(AdvCmdTokenizer.tokenize(input)));
+        }
+    }
+
+    @Test
+    public void matchesRegexUnclosedQuote() {
+        Random random = new Random(2);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String input = randomInput(random, 24);
+            assertEquals(input, regexUnclosedQuote(input), AdvCmdTokenizer.tokenize(input).getUnclosedQuote());
+        }
+    }
+
+    static String randomInput(Random random, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return builder.toString();
+    }
+
+    static List<String> tokens(AdvCmdTokenizer tokenizer) {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < tokenizer.count(); i++) {
+            tokens.add(tokenizer.start(i) + ":" + tokenizer.token(i));
+        }
+        return tokens;
+    }
+
+    private static List<String> regexTokens(String input) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = ARGUMENT_PATTERN.matcher(input);
+        while (matcher.find()) {
+            tokens.add(matcher.start() + ":" + matcher.group());
+        }
+        return tokens;
+    }
+
+    // The old parser stripped the first match until none were left, then looked for a quote in what remained.
+    private static char regexUnclosedQuote(String input) {
+        String toStrip = input;
+        while (true) {
+            Matcher matcher = ARGUMENT_PATTERN.matcher(toStrip);
+            if (!matcher.find()) break;
+            toStrip = toStrip.substring(0, matcher.start()) + toStrip.substring(matcher.end());
+        }
+        Matcher matcher = QUOTE_PATTERN.matcher(toStrip);
+        return matcher.find() ? matcher.group().charAt(0) : 0;
+    }
+}
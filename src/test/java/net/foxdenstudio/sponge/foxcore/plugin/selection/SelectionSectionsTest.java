@@ -0,0 +1,51 @@
+package net.foxdenstudio.sponge.foxcore.plugin.selection;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the boxes and volumes worked out from an index match {@link BoundingBox3#forEachSection}.
+ */
+public class SelectionSectionsTest {
+
+    private static final int ITERATIONS = 5000;
+
+    @Test
+    public void gridMatchesForEachSection() {
+        Random random = new Random(1);
+        for (int i = 0; i < ITERATIONS; i++) {
+            BoundingBox3 bounds = randomBox(random);
+            String message = bounds.toString();
+            SelectionSections sections = SelectionSections.of(new CuboidSelection(bounds));
+            List<BoundingBox3> expected = new ArrayList<>();
+            bounds.forEachSection(expected::add);
+
+            assertEquals(message, expected.size(), sections.count());
+            long volume = 0;
+            for (int index = 0; index < expected.size(); index++) {
+                assertEquals(message + " volume before " + index, volume, sections.volumeBefore(index));
+                BoundingBox3 box = sections.box(index);
+                assertEquals(message + " box " + index, expected.get(index).a, box.a);
+                assertEquals(message + " box " + index, expected.get(index).b, box.b);
+                volume += box.size();
+            }
+            assertEquals(message, bounds.size(), volume);
+            assertEquals(message, volume, sections.volumeBefore(sections.count()));
+        }
+    }
+
+    // Mostly small boxes that straddle section borders, sometimes far from the origin or on negative coordinates.
+    private static BoundingBox3 randomBox(Random random) {
+        int range = random.nextInt(4) == 0 ? 30000000 : 100;
+        Vector3i a = new Vector3i(random.nextInt(2 * range) - range, random.nextInt(512) - 256, random.nextInt(2 * range) - range);
+        Vector3i size = new Vector3i(random.nextInt(70), random.nextInt(70), random.nextInt(70));
+        return new BoundingBox3(a, a.add(size));
+    }
+}
@@ -0,0 +1,135 @@
+package net.foxdenstudio.sponge.foxcore.plugin.selection;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.foxdenstudio.sponge.foxcore.plugin.util.BoundingBox3;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link VoxelSet} against a {@link HashSet} of the same positions.
+ */
+public class VoxelSetTest {
+
+    private static final int ROUNDS = 300;
+
+    @Test
+    public void matchesHashSet() {
+        Random random = new Random(0);
+        VoxelSet set = new VoxelSet();
+        Set<Vector3i> expected = new HashSet<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            int spread = 1 << (2 + random.nextInt(7));
+            int removeChance = random.nextInt(3) * 20;
+            int operations = random.nextInt(2000);
+            for (int i = 0; i < operations; i++) {
+                Vector3i pos = new Vector3i(random.nextInt(spread) - spread / 2, random.nextInt(spread) - spread / 2, random.nextInt(spread) - spread / 2);
+                if (random.nextInt(100) < removeChance) {
+                    assertEquals(pos.toString(), expected.remove(pos), set.remove(pos));
+                } else {
+                    assertEquals(pos.toString(), expected.add(pos), set.add(pos));
+                }
+                if (random.nextInt(8) == 0) {
+                    assertEquals(pos.toString(), expected.contains(pos), set.contains(pos));
+                }
+            }
+            // Thin out enough that sections go back to sparse or are deleted, and the bounds shrink.
+            if (random.nextInt(5) == 0) {
+                int keep = random.nextInt(20);
+                for (Vector3i pos : new ArrayList<>(expected)) {
+                    if (random.nextInt(100) >= keep) {
+                        assertTrue(pos.toString(), set.remove(pos));
+                        expected.remove(pos);
+                    }
+                }
+            } else if (random.nextInt(50) == 0) {
+                set.clear();
+                expected.clear();
+            }
+            assertMatches(expected, set);
+        }
+    }
+
+    @Test
+    public void spliteratorCoversEveryBlockOnce() {
+        Random random = new Random(1);
+        for (int round = 0; round < ROUNDS; round++) {
+            VoxelSet set = new VoxelSet();
+            Set<Vector3i> expected = new HashSet<>();
+            fill(random, set, expected, random.nextInt(3000));
+
+            Spliterator<Vector3i> spliterator = set.spliterator();
+            assertEquals(expected.size(), spliterator.estimateSize());
+            assertEquals(expected, StreamSupport.stream(set.spliterator(), false).collect(Collectors.toSet()));
+            assertEquals(expected, StreamSupport.stream(set.spliterator(), true).collect(Collectors.toSet()));
+
+            Set<Vector3i> split = new HashSet<>();
+            drain(spliterator, split);
+            assertEquals(expected, split);
+        }
+    }
+
+    private static void assertMatches(Set<Vector3i> expected, VoxelSet set) {
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected.isEmpty(), set.isEmpty());
+
+        Set<Vector3i> cursor = new HashSet<>();
+        IVoxelStorage.Cursor it = set.cursor();
+        while (it.next()) {
+            assertTrue(cursor.add(new Vector3i(it.x(), it.y(), it.z())));
+        }
+        assertEquals(expected, cursor);
+
+        Set<Vector3i> sections = new HashSet<>();
+        for (Vector3i pos : expected) {
+            sections.add(new Vector3i(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+        }
+        Set<Vector3i> visited = new HashSet<>();
+        set.forEachSection((sx, sy, sz) -> assertTrue(visited.add(new Vector3i(sx, sy, sz))));
+        assertEquals(sections, visited);
+        assertEquals(sections.size(), set.sectionCount());
+
+        BoundingBox3 bounds = set.bounds();
+        if (expected.isEmpty()) {
+            assertNull(bounds);
+        } else {
+            Vector3i min = expected.iterator().next(), max = min;
+            for (Vector3i pos : expected) {
+                min = min.min(pos);
+                max = max.max(pos);
+            }
+            assertEquals(min, bounds.a);
+            assertEquals(max, bounds.b);
+        }
+    }
+
+    // Adds random positions, clustered so both sparse and bitmap sections come up.
+    static void fill(Random random, VoxelSet set, Set<Vector3i> expected, int count) {
+        int spread = 1 << (3 + random.nextInt(8));
+        for (int i = 0; i < count; i++) {
+            Vector3i pos = new Vector3i(random.nextInt(spread) - spread / 2, random.nextInt(spread) - spread / 2, random.nextInt(spread) - spread / 2);
+            assertEquals(pos.toString(), expected.add(pos), set.add(pos));
+        }
+    }
+
+    // Splits as far as it goes, so every block has to come out of exactly one part.
+    private static void drain(Spliterator<Vector3i> spliterator, Set<Vector3i> into) {
+        Spliterator<Vector3i> prefix = spliterator.trySplit();
+        if (prefix != null) {
+            drain(prefix, into);
+            drain(spliterator, into);
+        } else {
+            spliterator.forEachRemaining(pos -> assertTrue(pos.toString(), into.add(pos)));
+        }
+    }
+}